@@ -0,0 +1,163 @@
+/**
+ * @author shsmchlr
+ * Activation function of a layer of neurons, giving each neuron's output from its weighted sum,
+ * and the delta of each neuron from its error and output
+ * Each implementation has its own loops over arrays of values, so the JIT compiler can inline
+ * the function into them, rather than calling it for each value.
+ * The derivative is found from the output, as for all of these it can be,
+ * so the weighted sums need not be kept
+ */
+public interface Activation {
+
+    Activation LINEAR = new Linear();
+    Activation SIGMOID = new Logistic(false);
+    Activation FAST_SIGMOID = new Logistic(true);		// sigmoid from table, see Sigmoid
+    Activation TANH = new Tanh();
+    Activation RELU = new LeakyRelu(0.0);
+    Activation LEAKY_RELU = new LeakyRelu(0.01);
+
+    /**
+     * return output of a neuron whose weighted sum is sum
+     * @param sum
+     * @return	output
+     */
+    double output(double sum);
+
+    /**
+     * return derivative of the activation function for a neuron whose output is output
+     * @param output
+     * @return	derivative
+     */
+    double derivative(double output);
+
+    /**
+     * replace weighted sums from .. to-1 in vals by the outputs
+     * @param vals	array of weighted sums
+     * @param from	index of first
+     * @param to	one after index of last
+     */
+    void outputs(double[] vals, int from, int to);
+
+    /**
+     * find the deltas of num neurons, being error * derivative
+     * @param errors	array of errors
+     * @param outs		array of outputs
+     * @param deltas	array into which deltas written
+     * @param num		number of neurons
+     */
+    void deltas(double[] errors, double[] outs, double[] deltas, int num);
+
+    /**
+     * return the activation of the given name, being linear, sigmoid, fastsigmoid, tanh, relu or leakyrelu
+     * @param name
+     * @return	the activation
+     */
+    static Activation named(String name) {
+        switch (name.toLowerCase()) {
+            case "linear" : return LINEAR;
+            case "sigmoid" : return SIGMOID;
+            case "fastsigmoid" : return FAST_SIGMOID;
+            case "tanh" : return TANH;
+            case "relu" : return RELU;
+            case "leakyrelu" : return LEAKY_RELU;
+            default : throw new IllegalArgumentException("Unknown activation " + name);
+        }
+    }
+
+    /**
+     * linear activation: output is weighted sum
+     */
+    final class Linear implements Activation {
+        public double output(double sum) {
+            return sum;
+        }
+        public double derivative(double output) {
+            return 1.0;
+        }
+        public void outputs(double[] vals, int from, int to) {
+        }
+        public void deltas(double[] errors, double[] outs, double[] deltas, int num) {
+            System.arraycopy(errors, 0, deltas, 0, num);		// delta is just the error
+        }
+        public String toString() {
+            return "linear";
+        }
+    }
+
+    /**
+     * sigmoid activation, 1/(1+exp(-sum)), found exactly or from a table
+     */
+    final class Logistic implements Activation {
+        private final boolean useFast;
+
+        Logistic(boolean useFast) {
+            this.useFast = useFast;
+        }
+        public double output(double sum) {
+            return Sigmoid.of(sum, useFast);
+        }
+        public double derivative(double output) {
+            return output * (1.0 - output);
+        }
+        public void outputs(double[] vals, int from, int to) {
+            Sigmoid.apply(vals, from, to, useFast);
+        }
+        public void deltas(double[] errors, double[] outs, double[] deltas, int num) {
+            for (int ct=0; ct<num; ct++) {
+                double x = outs[ct];
+                deltas[ct] = errors[ct]*x*(1-x);
+            }
+        }
+        public String toString() {
+            return useFast ? "fastsigmoid" : "sigmoid";
+        }
+    }
+
+    /**
+     * hyperbolic tangent activation, with outputs -1..1
+     */
+    final class Tanh implements Activation {
+        public double output(double sum) {
+            return Math.tanh(sum);
+        }
+        public double derivative(double output) {
+            return 1.0 - output * output;
+        }
+        public void outputs(double[] vals, int from, int to) {
+            for (int ct=from; ct<to; ct++) vals[ct] = Math.tanh(vals[ct]);
+        }
+        public void deltas(double[] errors, double[] outs, double[] deltas, int num) {
+            for (int ct=0; ct<num; ct++) deltas[ct] = errors[ct] * (1.0 - outs[ct] * outs[ct]);
+        }
+        public String toString() {
+            return "tanh";
+        }
+    }
+
+    /**
+     * rectified linear activation: output is sum if positive, else slope * sum,
+     * with slope 0 for ReLU and small for leaky ReLU
+     */
+    final class LeakyRelu implements Activation {
+        private final double slope;
+
+        LeakyRelu(double slope) {
+            this.slope = slope;
+        }
+        public double output(double sum) {
+            return (sum > 0.0) ? sum : slope * sum;
+        }
+        public double derivative(double output) {
+            return (output > 0.0) ? 1.0 : slope;
+        }
+        public void outputs(double[] vals, int from, int to) {
+            for (int ct=from; ct<to; ct++) vals[ct] = (vals[ct] > 0.0) ? vals[ct] : slope * vals[ct];
+        }
+        public void deltas(double[] errors, double[] outs, double[] deltas, int num) {
+            for (int ct=0; ct<num; ct++) deltas[ct] = (outs[ct] > 0.0) ? errors[ct] : slope * errors[ct];
+        }
+        public String toString() {
+            return (slope == 0.0) ? "relu" : "leakyrelu";
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author shsmchlr
+ * Answers requests for the outputs of a network, each for one set of inputs, by collecting them
+ * into batches and finding the outputs of each batch at once with the block kernels, which is
+ * several times faster than doing them one at a time.
+ * Requests, from any number of threads, are queued; a thread takes them from the queue until it
+ * has maxBatch of them, or until maxDelay has passed since the first of them was made, so no
+ * request waits longer than that for its batch to start. It then finds the outputs of the batch
+ * and completes the future of each request with its outputs.
+ * The network used is a NetPredictor, or the latest copy published by a ModelPublisher, so
+ * requests can be answered while the network learns
+ */
+public class BatchPredictor implements AutoCloseable {
+
+    /**
+     * a request: its inputs, when it was made, and the future completed with its outputs
+     */
+    private static final class Request {
+        final double[] ins;
+        final long made;
+        final CompletableFuture<double[]> result = new CompletableFuture<double[]>();
+
+        Request(double[] ins) {
+            this.ins = ins;
+            made = System.nanoTime();
+        }
+    }
+
+    private final NetPredictor predictor;			// network used, if not from publisher
+    private final ModelPublisher publisher;			// or the publisher of the latest copy
+    private final int numIns, numOuts;				// inputs and outputs of network
+    private final int maxBatch;						// most requests in a batch
+    private final long maxDelay;					// longest wait, in ns, from first request of batch
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+    private final Thread batcher;					// thread which makes and does batches
+    private final Object lock = new Object();		// held to queue a request or to close
+    private volatile boolean closed = false;
+    private long numBatches = 0, numRequests = 0;	// counts of batches done and requests in them
+
+    /**
+     * create batcher using the given network
+     * @param predictor		network
+     * @param maxBatch		most requests in a batch, eg 64
+     * @param maxDelayMicros	longest a request waits for its batch to start, in microseconds, eg 200
+     */
+    public BatchPredictor(NetPredictor predictor, int maxBatch, long maxDelayMicros) {
+        this(predictor, null, maxBatch, maxDelayMicros);
+    }
+
+    /**
+     * create batcher using the latest copy of a network published as it learns
+     * @param publisher		publisher of copies of network
+     * @param maxBatch		most requests in a batch
+     * @param maxDelayMicros	longest a request waits for its batch to start, in microseconds
+     */
+    public BatchPredictor(ModelPublisher publisher, int maxBatch, long maxDelayMicros) {
+        this(null, publisher, maxBatch, maxDelayMicros);
+    }
+
+    private BatchPredictor(NetPredictor predictor, ModelPublisher publisher, int maxBatch, long maxDelayMicros) {
+        this.predictor = predictor;
+        this.publisher = publisher;
+        NetPredictor net = current();
+        numIns = net.numInputs();
+        numOuts = net.numOutputs();
+        this.maxBatch = Math.max(1, maxBatch);
+        maxDelay = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxDelayMicros));
+        batcher = new Thread(this::run, "Batch predictor");
+        batcher.setDaemon(true);						// so does not stop program exiting
+        batcher.start();
+    }
+
+    /**
+     * @return	network to use for the next batch
+     */
+    private NetPredictor current() {
+        return (publisher != null) ? publisher.latest() : predictor;
+    }
+
+    /**
+     * request the outputs of the network for the given inputs
+     * @param ins	array with the inputs (raw values if the network learnt a scaled data set),
+     * 				which must not be changed until the future is completed
+     * @return		future which is completed with a new array of the outputs
+     */
+    public CompletableFuture<double[]> submit(double[] ins) {
+        if (ins.length < numIns) throw new IllegalArgumentException("Need " + numIns + " inputs");
+        Request r = new Request(ins);
+        synchronized (lock) {							// so not queued after close has emptied queue
+            if (!closed) {
+                queue.add(r);
+                return r.result;
+            }
+        }
+        r.result.completeExceptionally(new IllegalStateException("Batch predictor closed"));
+        return r.result;
+    }
+
+    /**
+     * find the outputs of the network for the given inputs, waiting until they are found
+     * @param ins	array with the inputs
+     * @return		array of the outputs
+     */
+    public double[] predict(double[] ins) {
+        return submit(ins).join();
+    }
+
+    /**
+     * make batches of requests and find their outputs, until closed
+     */
+    private void run() {
+        ArrayList<Request> batch = new ArrayList<Request>(maxBatch);
+        double[] ins = new double[maxBatch * numIns];		// inputs of batch, one request after another
+        double[] outs = new double[maxBatch * numOuts];		// and outputs
+        double[][] buf = current().newBlockBuffers();
+        try {
+            while (!closed) {
+                Request first = queue.take();				// wait for a request
+                batch.add(first);
+                long deadline = first.made + maxDelay;
+                while (batch.size() < maxBatch) {			// add more until full or deadline
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0) continue;
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) break;
+                    Request r = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (r == null) break;
+                    batch.add(r);
+                }
+                doBatch(batch, ins, outs, buf);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+        for (Request r : batch) r.result.completeExceptionally(new IllegalStateException("Batch predictor closed"));
+        failQueued();
+    }
+
+    /**
+     * complete any requests still queued with an IllegalStateException
+     */
+    private void failQueued() {
+        for (Request r; (r = queue.poll()) != null; )
+            r.result.completeExceptionally(new IllegalStateException("Batch predictor closed"));
+    }
+
+    /**
+     * find the outputs of a batch of requests, and complete their futures
+     * @param batch		the requests
+     * @param ins		array for the inputs of the batch
+     * @param outs		array for the outputs
+     * @param buf		arrays used by the network
+     */
+    private void doBatch(ArrayList<Request> batch, double[] ins, double[] outs, double[][] buf) {
+        int rows = batch.size();
+        for (int row=0; row<rows; row++) System.arraycopy(batch.get(row).ins, 0, ins, row * numIns, numIns);
+        try {
+            current().predict(ins, rows, outs, buf);
+        } catch (Throwable e) {							// so the batcher carries on, even after an Error
+            for (Request r : batch) r.result.completeExceptionally(e);
+            return;
+        }
+        numBatches++;
+        numRequests += rows;
+        for (int row=0; row<rows; row++)
+            batch.get(row).result.complete(Arrays.copyOfRange(outs, row * numOuts, (row+1) * numOuts));
+    }
+
+    /**
+     * @return	number of batches done and mean number of requests in each
+     */
+    public String toString() {
+        return "Batches " + numBatches + " mean size " +
+                String.format("%.1f", numBatches == 0 ? 0.0 : (double) numRequests / numBatches);
+    }
+
+    /**
+     * stop taking requests: any not yet done are completed with an IllegalStateException
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;								// after this no request is queued
+        }
+        batcher.interrupt();
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued();									// any queued after the batcher's last look
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author shsmchlr
+ * Saves checkpoints of a network while it learns, every so many epochs and/or seconds,
+ * so a long run can be carried on (see NetCheckpoint.restore) if the program stops.
+ * After an epoch, when one is due, the network is copied into one of two buffers, which is all
+ * the learning waits for; the buffer is then written to file on a background thread, while the
+ * next checkpoint can be copied into the other buffer. If both buffers are still being written,
+ * the checkpoint is put off to the next epoch rather than making learning wait.
+ * If a write fails, learning carries on, and the failure is reported by close.
+ * The network is told to use this by setCheckpointer; close waits for writes to finish
+ */
+public class Checkpointer implements AutoCloseable {
+    private final LinearLayerNetwork net;		// network being saved
+    private final String fileName;				// file to which saved
+    private final int everyEpochs;				// save when this many epochs since last save, if > 0
+    private final long everyNanos;				// or when this long since last save, if > 0
+    private final ByteBuffer[] buffers = new ByteBuffer[2];	// checkpoints being written, reused
+    private final Future<?>[] writes = new Future<?>[2];	// writes of each buffer, if any
+    private int nextBuffer = 0;					// buffer to use next
+    private long lastSaved;						// time (System.nanoTime) of last checkpoint
+    private int lastEpoch = -1;					// epoch of last checkpoint, -1 before first epoch
+    private int numSaved = 0, numPutOff = 0;	// checkpoints saved, and put off as buffers busy
+    private Throwable failure;					// why last failed write failed, if any
+    private final ExecutorService writer;		// thread on which files are written
+
+    /**
+     * @param net			network to be saved
+     * @param fileName		file in which it is saved
+     * @param everyEpochs	save when this many epochs learnt since the last one, 0 if not used
+     * @param everySecs		save when this many seconds since the last one, 0 if not used
+     */
+    public Checkpointer(LinearLayerNetwork net, String fileName, int everyEpochs, double everySecs) {
+        this.net = net;
+        this.fileName = fileName;
+        this.everyEpochs = everyEpochs;
+        this.everyNanos = (long) (everySecs * 1e9);
+        lastSaved = System.nanoTime();
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Checkpoint");
+            t.setDaemon(true);							// so does not stop program exiting
+            return t;
+        });
+    }
+
+    /**
+     * called, on the thread doing the learning, after each epoch: saves a checkpoint if one is due
+     * @param epoch	number of epochs learnt so far
+     */
+    void epochLearnt(int epoch) {
+        if (lastEpoch < 0) lastEpoch = epoch - 1;		// count from first epoch, eg after a restore
+        boolean due = (everyEpochs > 0 && epoch - lastEpoch >= everyEpochs)
+                || (everyNanos > 0 && System.nanoTime() - lastSaved >= everyNanos);
+        if (due) save(epoch);
+    }
+
+    /**
+     * copy the network into the next buffer, if it is not still being written, and start writing it
+     * @param epoch	number of epochs learnt so far
+     */
+    private void save(int epoch) {
+        Future<?> busy = writes[nextBuffer];
+        if (busy != null && !busy.isDone()) {
+            numPutOff++;								// try again after next epoch
+            return;
+        }
+        checkWrite(busy);								// note if its last write failed
+        final ByteBuffer buf = NetCheckpoint.encode(net, buffers[nextBuffer]);	// copy network
+        buffers[nextBuffer] = buf;
+        writes[nextBuffer] = writer.submit(() -> {
+            NetCheckpoint.write(buf, fileName);
+            return null;
+        });
+        nextBuffer = 1 - nextBuffer;
+        lastEpoch = epoch;
+        lastSaved = System.nanoTime();
+        numSaved++;
+    }
+
+    /**
+     * wait for a write to finish, noting why it failed if it did
+     * @param done	the write, or null
+     */
+    private void checkWrite(Future<?> done) {
+        if (done == null) return;
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return	number of checkpoints saved so far, and number put off as both buffers were being written
+     */
+    public String toString() {
+        return "Checkpoints " + numSaved + " to " + fileName + (numPutOff > 0 ? " (" + numPutOff + " put off)" : "");
+    }
+
+    /**
+     * wait for any writes still going, and stop the thread writing them
+     * (a last checkpoint after learning can then be saved by NetCheckpoint.save)
+     * @throws IOException	if a checkpoint could not be written
+     */
+    public void close() throws IOException {
+        for (Future<?> w : writes) checkWrite(w);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw new IOException("Checkpoint not written : " + failure.getMessage(), failure);
+    }
+}
@@ -1,7 +1,14 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 
 /**
@@ -15,104 +22,144 @@ public class DataSet {
 
     /**
      * has variables for number of inputs, outputs and items in the data set
-     * and then an array list of items
-     * each item is in a private class which has inputs, output and targets
+     * and then the actual data, held as arrays of doubles
+     * each array holds one value after another for each item in turn, so the inputs of
+     * item n are at insData[n*numIns .. (n+1)*numIns-1], and similarly for targets and outputs
      */
     protected int numIns, numOuts, numItems, tWidth;				// information on numbers in set
     protected String inFormat, outFormat, rawFormat;				// how the inputs /outputs formated when printed
     protected ArrayList<String>inNames = new ArrayList<String>();	// names of all the inputs
     protected ArrayList<String>outNames = new ArrayList<String>();	// names of all the outputs/targets
-    protected ArrayList<DataItem> allItems = new ArrayList<DataItem>();	// the actual data
-    private ArrayList<ArrayList<Double>> sseLog = new ArrayList<ArrayList<Double>>();	// log of sse during learning
+    protected double[] insData;									// inputs of all items
+    protected float[] insFloats;								// or these, if held as floats
+    protected double[] targetsData;								// targets of all items
+    protected DoubleBuffer insMapped, targetsMapped;			// or inputs and targets read from a mapped file
+    protected double[] outsData;								// actual outputs (calculated separately)
+    private final SSELog sseLog = new SSELog();					// log of sse during learning
+    private double[] sseBuffer;									// SSEs of latest epoch, before being logged
 
     /**
-     * class for an item in data set
+     * class which gives a list view of the values of one item in one of the data arrays
+     * so the values can be used as a list without copying them
      * @author shsmchlr
      *
      */
-    protected class DataItem {
-        private ArrayList<Double> dataInputs = new ArrayList<Double>();		// space for inputs
-        private ArrayList<Double> dataOutputs = new ArrayList<Double>();	// actual outputs (calculated separately)
-        private ArrayList<Double> dataTargets = new ArrayList<Double>();	// targets
+    private static class RowView extends AbstractList<Double> implements RandomAccess {
+        private final double[] data;		// array with the values
+        private final int offset, size;		// where in it the values of the item start, and how many
 
         /**
-         * constructor which is passed the number of inputs and a string with data set
-         * @param numIns	how many inputs
-         * @param data		string with inputs and targets separated by space
+         * constructor
+         * @param data		array of values
+         * @param offset	index of first value of item
+         * @param size		number of values in item
          */
-        public DataItem(int numIns, String data) {
-            String dataSplit [] = data.split(" ");			// split into strings for each input/target
-            for (int ct=0; ct<dataSplit.length; ct++) {		// for each
-                double d = Double.parseDouble(dataSplit[ct]);	// convert to double
-                if (ct<numIns) dataInputs.add(d);			// if is input, add to dataInputs
-                else {
-                    dataTargets.add(d);						// add to dataTargets
-                    dataOutputs.add(0.0);					// add space in dataOutputs
-                }
-            }
+        RowView(double[] data, int offset, int size) {
+            this.data = data;
+            this.offset = offset;
+            this.size = size;
+        }
+        /**
+         * return the ct'th value
+         */
+        public Double get(int ct) {
+            return data[offset + Objects.checkIndex(ct, size)];
         }
         /**
-         * getInputs
-         * @return	array list of the inputs
+         * set the ct'th value, returning what was there
          */
-        public ArrayList<Double> getInputs() {
-            return dataInputs;
+        public Double set(int ct, Double d) {
+            int index = offset + Objects.checkIndex(ct, size);
+            double old = data[index];
+            data[index] = d;
+            return old;
         }
         /**
-         * getTargets
-         * @return	array list of the targets
+         * how many values
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * view of the values of an item held as floats, as a list
+     */
+    private static class FloatRowView extends AbstractList<Double> implements RandomAccess {
+        private final float[] data;			// array with the values
+        private final int offset, size;		// where in it the values of the item start, and how many
+
+        /**
+         * constructor
+         * @param data		array of values
+         * @param offset	index of first value of item
+         * @param size		number of values in item
          */
-        public ArrayList<Double> getTargets() {
-            return dataTargets;
+        FloatRowView(float[] data, int offset, int size) {
+            this.data = data;
+            this.offset = offset;
+            this.size = size;
         }
         /**
-         * getOutputs
-         * @return	array list of the outputs
+         * return the ct'th value
          */
-        public ArrayList<Double> getOutputs() {
-            return dataOutputs;
+        public Double get(int ct) {
+            return (double) data[offset + Objects.checkIndex(ct, size)];
         }
         /**
-         * getErrors
-         * @return	array list of the errors
+         * set the ct'th value, returning what was there
          */
-        public ArrayList<Double> getErrors() {
-            ArrayList<Double> dataErrors = new ArrayList<Double>();		// create list of errors
-            for (int ct=0; ct<dataTargets.size(); ct++)					// for each target
-                dataErrors.add(dataTargets.get(ct) - dataOutputs.get(ct));	// add the error
-            return dataErrors;											// return result
+        public Double set(int ct, Double d) {
+            int index = offset + Objects.checkIndex(ct, size);
+            double old = data[index];
+            data[index] = d.floatValue();
+            return old;
         }
         /**
-         * store the pos'th output into the data set
-         * @param pos	which output
-         * @param d		value of output
+         * how many values
          */
-        public void setOutput(int pos, double d) {
-            dataOutputs.set(pos,  d);
+        public int size() {
+            return size;
         }
+    }
+
+    /**
+     * read only view of the values of an item held in a buffer, eg mapped from a file, as a list
+     */
+    private static class BufferRowView extends AbstractList<Double> implements RandomAccess {
+        private final DoubleBuffer data;	// buffer with the values
+        private final int offset, size;		// where in it the values of the item start, and how many
+
         /**
-         * store the outputs in d into this item in data set
-         * @param d		value of output
+         * constructor
+         * @param data		buffer of values
+         * @param offset	index of first value of item
+         * @param size		number of values in item
          */
-        public void setOutputs(ArrayList<Double> d) {
-            for (int ct=0; ct<d.size(); ct++) dataOutputs.set(ct,  d.get(ct));
+        BufferRowView(DoubleBuffer data, int offset, int size) {
+            this.data = data;
+            this.offset = offset;
+            this.size = size;
         }
         /**
-         * set the inputs
-         * @param ins
+         * return the ct'th value
          */
-        public void setInputs (ArrayList<Double> ins) {
-            dataInputs = ins;
+        public Double get(int ct) {
+            return data.get(offset + Objects.checkIndex(ct, size));
         }
         /**
-         * and the targets
-         * @param tars
+         * how many values
          */
-        public void setTargets (ArrayList<Double> tars) {
-            dataTargets = tars;
+        public int size() {
+            return size;
         }
     }
 
+    /**
+     * constructor of an empty data set, whose values are then set by a loader, eg DataSetFile
+     */
+    protected DataSet() {
+    }
     /**
      * constructor which is a string with data set
      * @param alldata	string defining all data
@@ -124,18 +171,121 @@ public class DataSet {
     public DataSet(String alldata) {
         String allSplit[] = alldata.split(";");					// split all lines strings
 
-        String fLine[] = allSplit[0].split(" ");				// split first line into strings
+        setSizes(allSplit[0].split(" "));						// process first line to get sizes and formats
+        setNames(allSplit[1].split(" "));						// process second line to get all the names
+
+        numItems = allSplit.length - 2;							// remaining lines are the items
+        insData = new double[numItems * numIns];				// so create space for them
+        targetsData = new double[numItems * numOuts];
+        outsData = new double[numItems * numOuts];
+        for (int item=0; item<numItems; item++)					// process remaining lines
+            setItem(item, allSplit[item+2]);					// putting each into the arrays
+    }
+    /**
+     * constructor which reads the data set from a reader, such as of a file, line by line
+     * parsing each item straight into the arrays, so the whole file is never held as a string
+     * lines are as in the string passed to the other constructor, but values may be separated
+     * by any number of spaces or tabs, and empty lines are ignored
+     * @param br	reader from which data read
+     * @throws IOException	if cannot read
+     */
+    protected DataSet(BufferedReader br) throws IOException {
+        setSizes(nextLine(br).trim().split("\\s+"));			// first line has sizes and formats
+        setNames(nextLine(br).trim().split("\\s+"));			// second has names
+        int capacity = 1024;									// space for this many items to start
+        insData = new double[capacity * numIns];
+        targetsData = new double[capacity * numOuts];
+        String line;
+        while ((line = br.readLine()) != null) {				// for each remaining line
+            if (line.trim().isEmpty()) continue;				// ignoring empty ones
+            if (numItems == capacity) {							// if arrays full, double their size
+                capacity *= 2;
+                insData = Arrays.copyOf(insData, capacity * numIns);
+                targetsData = Arrays.copyOf(targetsData, capacity * numOuts);
+            }
+            parseItem(numItems++, line);						// parse line into next item
+        }
+        insData = Arrays.copyOf(insData, numItems * numIns);	// now trim arrays to size
+        targetsData = Arrays.copyOf(targetsData, numItems * numOuts);
+        outsData = new double[numItems * numOuts];				// and create space for outputs
+    }
+    /**
+     * return next line from reader which is not empty
+     * @param br	reader
+     * @return		line
+     * @throws IOException	if cannot read, or at end of file
+     */
+    private static String nextLine(BufferedReader br) throws IOException {
+        String line;
+        do {
+            line = br.readLine();
+            if (line == null) throw new IOException("Data set file ends before items");
+        } while (line.trim().isEmpty());
+        return line;
+    }
+    /**
+     * parse the numbers in line, separated by spaces or tabs, as inputs then targets of item'th item
+     * @param item		which item
+     * @param line		line with the numbers
+     */
+    private void parseItem(int item, String line) {
+        int pos = 0, len = line.length();
+        for (int ct=0; ct<numIns+numOuts; ct++) {				// for each input and target
+            while (pos < len && Character.isWhitespace(line.charAt(pos))) pos++;	// skip to number
+            if (pos == len) throw new NumberFormatException("Too few values in : " + line);
+            int start = pos;
+            while (pos < len && !Character.isWhitespace(line.charAt(pos))) pos++;	// find its end
+            double d = Double.parseDouble(line.substring(start, pos));
+            if (ct<numIns) insData[item*numIns + ct] = d;		// if is input, store in inputs
+            else targetsData[item*numOuts + ct - numIns] = d;	// else in targets
+        }
+    }
+    /**
+     * read the data set from the given file name, in one pass straight into the data arrays
+     * @param name	file name
+     * @return		the data set
+     * @throws UncheckedIOException	if cannot read file
+     */
+    public static DataSet LoadFile(String name) {
+        try (BufferedReader br = new BufferedReader(new FileReader(name), 1 << 16)) {
+            return new DataSet(br);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read data set " + name, e);
+        }
+    }
+    /**
+     * put the inputs and targets defined in the string data as the item'th item in the set
+     * @param item		which item
+     * @param data		string with inputs and targets separated by space
+     */
+    private void setItem(int item, String data) {
+        String dataSplit [] = data.split(" ");					// split into strings for each input/target
+        for (int ct=0; ct<dataSplit.length; ct++) {				// for each
+            double d = Double.parseDouble(dataSplit[ct]);		// convert to double
+            if (ct<numIns) insData[item*numIns + ct] = d;		// if is input, store in inputs
+            else targetsData[item*numOuts + ct - numIns] = d;	// else in targets
+        }
+    }
+    /**
+     * remove the first num items from the data set, moving the rest down
+     * @param num	how many to remove
+     */
+    protected void removeFirstItems(int num) {
+        numItems -= num;
+        insData = Arrays.copyOfRange(insData, num*numIns, insData.length);
+        targetsData = Arrays.copyOfRange(targetsData, num*numOuts, targetsData.length);
+        outsData = Arrays.copyOfRange(outsData, num*numOuts, outsData.length);
+    }
+    /**
+     * set up numbers of inputs and outputs, and the formats for printing them
+     * @param fLine		strings with numIns numOuts then the optional formats
+     */
+    private void setSizes(String[] fLine) {
         numIns = Integer.parseInt(fLine[0]);					// first number is number of inputs
         numOuts = Integer.parseInt(fLine[1]);					// then number of outputs
         if (fLine.length>2) inFormat = fLine[2]; else inFormat = "%.1f";	// get format for printing ins
         if (fLine.length>3) outFormat = fLine[3]; else outFormat = "%.1f";	// and for outputs
         if (fLine.length>4) rawFormat = fLine[4]; else rawFormat = "%.2f";	// and for raw outputs
-
-        setNames(allSplit[1].split(" "));						// process second line to get all the names
-
-        for (int ct=2; ct<allSplit.length; ct++)				// process remaining lines
-            allItems.add(new DataItem(numIns, allSplit[ct]));	// add each line
-        numItems = allItems.size();								// (note how many items)
     }
     /**
      * set up names of inputs and outputs
@@ -147,20 +297,21 @@ public class DataSet {
     }
     /**
      * read the data for the set from the given file name
+     * (LoadFile reads a data set straight from a file, without making this string)
      * @param name
      * @return		String with each line separated by ;
      */
     public static String GetFile(String name) {
-        String ans = "";
+        StringBuilder ans = new StringBuilder();
         BufferedReader br = null;
         try {
             br = new BufferedReader(new FileReader(name));	// read file
             String line;									// for processing each line in turn
-            while ((line = br.readLine()) != null && (line.length() > 0)) {		// for all lines in file
+            while ((line = br.readLine()) != null) {		// for all lines in file
                 line = line.replace("\t", " ");				// replace tabs with spaces
-                if (line.length()>0) { 						// if not empty string
-                    if (ans.length()>0) ans = ans + ";";	// add to answer
-                    ans = ans + line;
+                if (line.trim().length()>0) { 				// if not empty string (skipped, as by LoadFile)
+                    if (ans.length()>0) ans.append(';');	// add to answer
+                    ans.append(line);
                 }
             }
         } catch (IOException e) {			// report error if cant read file
@@ -174,7 +325,7 @@ public class DataSet {
                 ex.printStackTrace();
             }
         }
-        return ans;
+        return ans.toString();
     }
 
     /**
@@ -198,29 +349,136 @@ public class DataSet {
     public int numInSet() {
         return numItems;
     }
+    /**
+     * return the ct'th input of the item'th item in the data set
+     * @param item
+     * @param ct
+     * @return		the input
+     */
+    public double getIn(int item, int ct) {
+        if (insMapped != null) return insMapped.get(item*numIns + ct);
+        if (insData == null) return insFloats[item*numIns + ct];
+        return insData[item*numIns + ct];
+    }
+    /**
+     * return the ct'th target of the item'th item in the data set
+     * @param item
+     * @param ct
+     * @return		the target
+     */
+    public double getTarget(int item, int ct) {
+        return target(item*numOuts + ct);
+    }
+    /**
+     * return the target at the given index, from the array or the mapped file
+     * @param index		index of target, item*numOuts + output
+     * @return		the target
+     */
+    private double target(int index) {
+        return (targetsData != null) ? targetsData[index] : targetsMapped.get(index);
+    }
+    /**
+     * return the ct'th output of the item'th item in the data set
+     * @param item
+     * @param ct
+     * @return		the output
+     */
+    public double getOut(int item, int ct) {
+        return outsData[item*numOuts + ct];
+    }
+    /**
+     * return the array holding the inputs of all items, for networks to read directly
+     * @return		array of inputs, or null if they are held as floats or read from a mapped file
+     */
+    public double[] getInsData() {
+        return insData;
+    }
+    /**
+     * return the array holding the inputs of all items if they are held as floats
+     * @return		array of inputs, or null if held as doubles
+     */
+    public float[] getInsFloats() {
+        return insFloats;
+    }
+    /**
+     * hold the inputs as floats rather than doubles, halving the space they take
+     * (targets and outputs are still doubles, so errors and SSEs are found to full precision)
+     */
+    public void storeInsAsFloats() {
+        if (insMapped != null) {							// copy from file, so no longer shared
+            insFloats = new float[numItems * numIns];
+            for (int ct=0; ct<insFloats.length; ct++) insFloats[ct] = (float) insMapped.get(ct);
+            insMapped = null;
+        }
+        if (insData == null) return;						// already floats
+        insFloats = new float[insData.length];
+        for (int ct=0; ct<insData.length; ct++) insFloats[ct] = (float) insData[ct];
+        insData = null;
+    }
+    /**
+     * copy the inputs of rows items, starting at the item'th, into ins, one item after another,
+     * whether they are held as doubles or floats, or read from a mapped file
+     * @param item	first item
+     * @param rows	number of items
+     * @param ins	array into which copied, from index 0
+     */
+    public void copyIns(int item, int rows, double[] ins) {
+        copyIns(item, rows, ins, 0);
+    }
+    /**
+     * copy the inputs of num items, being items[from] .. items[from+num-1], into ins, one after another,
+     * whether they are held as doubles or floats
+     * @param items	array of item numbers, eg a shuffled order
+     * @param from	index in items of first
+     * @param num	number of items
+     * @param ins	array into which copied, from index 0
+     */
+    public void copyIns(int[] items, int from, int num, double[] ins) {
+        for (int ct=0; ct<num; ct++) copyIns(items[from + ct], 1, ins, ct*numIns);
+    }
+    /**
+     * copy the inputs of rows items, starting at the item'th, into ins from index to
+     */
+    private void copyIns(int item, int rows, double[] ins, int to) {
+        int from = item*numIns;
+        if (insData != null) System.arraycopy(insData, from, ins, to, rows*numIns);
+        else if (insMapped != null) insMapped.get(from, ins, to, rows*numIns);	// absolute, so thread safe
+        else for (int ct=0; ct<rows*numIns; ct++) ins[to + ct] = insFloats[from + ct];
+    }
+    /**
+     * return where in the inputs array the inputs of the item'th item start
+     * @param item
+     * @return		index of first input
+     */
+    public int insOffset(int item) {
+        return item*numIns;
+    }
     /**
      * return the inputs of the item'th item in the data set
      * @param item
-     * @return		arraylist of inputs
+     * @return		list view of inputs
      */
-    public ArrayList<Double> getIns(int item) {
-        return allItems.get(item).getInputs();
+    public List<Double> getIns(int item) {
+        if (insMapped != null) return new BufferRowView(insMapped, item*numIns, numIns);
+        if (insData == null) return new FloatRowView(insFloats, item*numIns, numIns);
+        return new RowView(insData, item*numIns, numIns);
     }
     /**
      * return the targets of the item'th item in the data set
      * @param item
-     * @return		arraylist of targets
+     * @return		list view of targets
      */
-    public ArrayList<Double> getTargets(int item) {
-        return allItems.get(item).getTargets();
+    public List<Double> getTargets(int item) {
+        if (targetsMapped != null) return new BufferRowView(targetsMapped, item*numOuts, numOuts);
+        return new RowView(targetsData, item*numOuts, numOuts);
     }
     /**
      * return the outputs of the item'th item in the data set
      * @param item
-     * @return		arraylist of outputs
+     * @return		list view of outputs
      */
-    public ArrayList<Double> getOuts(int item) {
-        return allItems.get(item).getOutputs();
+    public List<Double> getOuts(int item) {
+        return new RowView(outsData, item*numOuts, numOuts);
     }
     /**
      * return the errors of the item'th item in the data set
@@ -228,7 +486,45 @@ public class DataSet {
      * @return		arraylist of errors
      */
     public ArrayList<Double> getErrors(int item) {
-        return allItems.get(item).getErrors();
+        ArrayList<Double> dataErrors = new ArrayList<Double>();		// create list of errors
+        for (int ct=0; ct<numOuts; ct++)							// for each target
+            dataErrors.add(getTarget(item, ct) - getOut(item, ct));	// add the error
+        return dataErrors;											// return result
+    }
+    /**
+     * put the errors of the item'th item in the data set into errs, so no list need be created
+     * @param item
+     * @param errs	array, of at least numOuts values, into which the errors are written
+     */
+    public void getErrors(int item, double[] errs) {
+        int index = item*numOuts;									// index of item's first target
+        for (int ct=0; ct<numOuts; ct++, index++)					// for each target
+            errs[ct] = target(index) - outsData[index];			// error is target - output
+    }
+    /**
+     * put the errors of num items, starting at the item'th, into errs, one item after another
+     * @param item	first item
+     * @param num	number of items
+     * @param errs	array, of at least num*numOuts values, into which the errors are written
+     */
+    public void getErrors(int item, int num, double[] errs) {
+        int index = item*numOuts;									// index of first target
+        for (int ct=0; ct<num*numOuts; ct++, index++)				// for each target of each item
+            errs[ct] = target(index) - outsData[index];			// error is target - output
+    }
+    /**
+     * put the errors of num items, being items[from] .. items[from+num-1], into errs, one after another
+     * @param items	array of item numbers, eg a shuffled order
+     * @param from	index in items of first
+     * @param num	number of items
+     * @param errs	array, of at least num*numOuts values, into which the errors are written
+     */
+    public void getErrors(int[] items, int from, int num, double[] errs) {
+        for (int ct=0; ct<num; ct++) {
+            int index = items[from + ct]*numOuts;
+            for (int oct=0; oct<numOuts; oct++, index++)
+                errs[ct*numOuts + oct] = target(index) - outsData[index];
+        }
     }
     /**
      * store d as the first value in the item'th data record
@@ -236,7 +532,7 @@ public class DataSet {
      * @param d
      */
     public void setOutput(int item, double d) {
-        allItems.get(item).setOutput(0, d);
+        outsData[item*numOuts] = d;
     }
     /**
      * store the output d as the pos'th output of the item'th item in the data set
@@ -245,15 +541,43 @@ public class DataSet {
      * @param d
      */
     public void setOutput(int item, int pos, double d) {
-        allItems.get(item).setOutput(pos, d);
+        outsData[item*numOuts + pos] = d;
+    }
+    /**
+     * store the outputs into the data set
+     * @param item	which output
+     * @param d		list of outputs
+     */
+    public void setOutputs(int item, List<Double>d) {
+        for (int ct=0; ct<d.size(); ct++) outsData[item*numOuts + ct] = d.get(ct);
     }
     /**
      * store the outputs into the data set
      * @param item	which output
-     * @param d		arraylist of outputs
+     * @param d		array of outputs
+     */
+    public void setOutputs(int item, double[] d) {
+        System.arraycopy(d, 0, outsData, item*numOuts, numOuts);
+    }
+    /**
+     * store the outputs of num items, starting at the item'th, into the data set
+     * @param item	first item
+     * @param num	number of items
+     * @param d		array of outputs, one item after another
+     */
+    public void setOutputs(int item, int num, double[] d) {
+        System.arraycopy(d, 0, outsData, item*numOuts, num*numOuts);
+    }
+    /**
+     * store the outputs of num items, being items[from] .. items[from+num-1], into the data set
+     * @param items	array of item numbers, eg a shuffled order
+     * @param from	index in items of first
+     * @param num	number of items
+     * @param d		array with outputs of each, one item after another
      */
-    public void setOutputs(int item, ArrayList<Double>d) {
-        allItems.get(item).setOutputs(d);
+    public void setOutputs(int[] items, int from, int num, double[] d) {
+        for (int ct=0; ct<num; ct++)
+            System.arraycopy(d, ct*numOuts, outsData, items[from + ct]*numOuts, numOuts);
     }
     /**
      * return s as a string of width mnum
@@ -291,7 +615,7 @@ public class DataSet {
      * @param vals
      * @return
      */
-    private String valstoString(ArrayList<Double> vals, String fStr) {
+    private String valstoString(List<Double> vals, String fStr) {
         String s = "";
         for (int ct=0; ct<vals.size(); ct++)
             s = s + fixedWidth(String.format(fStr, vals.get(ct)));
@@ -300,27 +624,45 @@ public class DataSet {
     /**
      * get the list of inputs of ct'th item from set ready for printing
      * @param ct
-     * @return array list
+     * @return list
      */
-    protected ArrayList<Double> getPrintIns(int ct) {
+    protected List<Double> getPrintIns(int ct) {
         return getIns(ct);				// raw inputs needed here
     }
     /**
      * get the list of targets of ct'th item from set ready for printing
      * @param ct
-     * @return array list
+     * @return list
      */
-    protected ArrayList<Double> getPrintTargets(int ct) {
+    protected List<Double> getPrintTargets(int ct) {
         return getTargets(ct);			// raw targets needed here
     }
     /**
      * get the list of outputs of ct'th item from set ready for printing
      * @param ct
-     * @return array list
+     * @return list
      */
-    public ArrayList<Double> getPrintOuts(int ct) {
+    public List<Double> getPrintOuts(int ct) {
         return getOuts(ct);				// raw outputs needed here
     }
+    /**
+     * get the ct'th target of the item'th item from set ready for printing
+     * @param item
+     * @param ct
+     * @return target
+     */
+    protected double getPrintTarget(int item, int ct) {
+        return getTarget(item, ct);		// raw target needed here
+    }
+    /**
+     * get the ct'th output of the item'th item from set ready for printing
+     * @param item
+     * @param ct
+     * @return output
+     */
+    protected double getPrintOut(int item, int ct) {
+        return getOut(item, ct);		// raw output needed here
+    }
     /**
      * get the ct'th target of all items in the data set
      * @param ct
@@ -329,7 +671,7 @@ public class DataSet {
     public ArrayList<Double> getAllTargets(int ct) {
         ArrayList<Double> ans = new ArrayList<Double>();
         for (int item = 0; item < numInSet(); item++)
-            ans.add(getPrintTargets(item).get(ct));
+            ans.add(getPrintTarget(item, ct));
         return ans;
     }
     /**
@@ -340,7 +682,7 @@ public class DataSet {
     public ArrayList<Double> getAllOuts(int ct) {
         ArrayList<Double> ans = new ArrayList<Double>();
         for (int item = 0; item < numInSet(); item++)
-            ans.add(getPrintOuts(item).get(ct));
+            ans.add(getPrintOut(item, ct));
         return ans;
     }
     private String namesToString(ArrayList<String>names) {
@@ -379,20 +721,50 @@ public class DataSet {
         return s;
     }
 
+    /**
+     * analyse the outputs in one pass through the data set, creating no objects as it goes
+     * finding the sum of the squares of errors for each output (relative to size of set)
+     * and, if correct is not null, the % of items for which each output is correctly classified
+     * @param sse		array, of at least numOuts values, into which the SSEs are written
+     * @param correct	array, of at least numOuts values, into which the % correct are written, or null
+     */
+    protected void analyse(double[] sse, int[] correct) {
+        Arrays.fill(sse, 0, numOuts, 0.0);						// set SSEs to 0
+        if (correct != null) Arrays.fill(correct, 0, numOuts, 0);	// and number correct
+        int index = 0;											// index of next target/output
+        for (int item=0; item<numItems; item++) {				// for each item in the set
+            for (int ct=0; ct<numOuts; ct++, index++) {			// for each output
+                double err = target(index) - outsData[index];
+                sse[ct] += err*err;								// add square of error to total
+                if (correct != null &&							// if target = output (denormalised)
+                        Math.round(getPrintTarget(item, ct)) == Math.round(getPrintOut(item, ct)))
+                    correct[ct]++;								// increment count
+            }
+        }
+        for (int ct=0; ct<numOuts; ct++) {						// relate to size in set
+            sse[ct] /= numItems;
+            if (correct != null) correct[ct] = correct[ct]*100/numItems;	// turn into %
+        }
+    }
+
+    /**
+     * calculate the sum of the squares of errors for each output across the data set
+     * putting them into sse, so no list need be created
+     * @param sse	array, of at least numOuts values, into which the SSEs are written
+     */
+    public void calcSSE(double[] sse) {
+        analyse(sse, null);
+    }
+
     /**
      * calculate the sum of the squares of errors for each output across the data set
      * @return	array list with the SSE for each output
      */
     public ArrayList<Double> getSSE() {
+        double[] sse = new double[numOuts];
+        calcSSE(sse);										// calculate the SSEs
         ArrayList<Double> SSE = new ArrayList<Double>();	// create such a list
-        for (int ct=0; ct<numOuts; ct++) SSE.add(0.0);		// for each output set SSE to 0
-        for (int item=0; item<numInSet(); item++) {			// for each item in the set
-            ArrayList<Double> errs = getErrors(item);		// get the errors for all outputs
-            for (int ct=0; ct<numOuts; ct++) SSE.set(ct, SSE.get(ct) + errs.get(ct)*errs.get(ct));
-            // add square of each error to total
-        }
-        for (int ct=0; ct<numOuts; ct++) SSE.set(ct, SSE.get(ct)/numInSet());
-        // relate to size in set
+        for (double d : sse) SSE.add(d);					// and copy them in
         return SSE;											// return the result
     }
 
@@ -401,9 +773,10 @@ public class DataSet {
      * @return	sum of SSEs
      */
     public double getTotalSSE() {
-        ArrayList<Double> AllSSE = getSSE();		// get all SSEs
+        double[] AllSSE = new double[numOuts];
+        calcSSE(AllSSE);							// get all SSEs
         double ans = 0.0;							// now add them all
-        for (Double d : AllSSE) ans += d;
+        for (double d : AllSSE) ans += d;
         return ans;
 
     }
@@ -412,17 +785,10 @@ public class DataSet {
      * @return	array list with number of items which are correctly classified
      */
     public ArrayList<Integer>getCorrect() {
+        int[] correct = new int[numOuts];
+        analyse(new double[numOuts], correct);					// find % correct
         ArrayList<Integer> Correct = new ArrayList<Integer>();	// create list
-        for (int ct=0; ct<numOuts; ct++) Correct.add(0);		// for each output, set sum to 0
-        for (int item=0; item<numInSet(); item++) {				// for each item in the set
-            ArrayList<Double> tars = getPrintTargets(item);		// get the targets (denormalised)
-            ArrayList<Double> outs = getPrintOuts(item);		// and the outputs
-            for (int ct=0; ct<numOuts; ct++) 					// for each output
-                if (Math.round(tars.get(ct)) == Math.round(outs.get(ct)) )	// if target = output
-                    Correct.set(ct, Correct.get(ct) + 1);	// increment count
-        }
-        for (int ct=0; ct<numOuts; ct++) 		// turn into %
-            Correct.set(ct, Correct.get(ct)*100/numInSet());
+        for (int c : correct) Correct.add(c);					// and copy them in
         return Correct;
     }
     /**
@@ -432,15 +798,17 @@ public class DataSet {
      * @return string with these results
      */
     public String dataAnalysis() {
-        ArrayList<Double> SSE = getSSE();		// get raw data
+        boolean isClassifier = outFormat.equals("%.0f");	// is it a classification problem
+        double[] SSE = new double[numOuts];
+        int[] Correct = isClassifier ? new int[numOuts] : null;
+        analyse(SSE, Correct);						// get raw data in one pass
         String s = "SSE ";
-        for (int ct=0; ct<numOuts; ct++) s = s + String.format("%.4f", SSE.get(ct)) + " ";
+        for (int ct=0; ct<numOuts; ct++) s = s + String.format("%.4f", SSE[ct]) + " ";
         // generate string with SSE of each output
-        if (outFormat.equals("%.0f")) {			// if classification problem
-            ArrayList<Integer> Correct = getCorrect();	// get number classified
+        if (isClassifier) {							// if classification problem
             s = s + ": %Correct ";
             for (int ct=0; ct<numOuts; ct++) 		// add number correctly classified as a %
-                s = s + Integer.toString(Math.round(Correct.get(ct))) + " ";
+                s = s + Integer.toString(Correct[ct]) + " ";
         }
         return s;			// return string with result
     }
@@ -455,7 +823,7 @@ public class DataSet {
     }
 
     /**
-     * empty the arraylist which is the log of SSEs during training
+     * empty the log of SSEs during training
      */
     public void clearSSELog() {
         sseLog.clear();
@@ -471,7 +839,17 @@ public class DataSet {
      * Calculate the SSE following the lastest presentation of dataset, and add to the log
      */
     public void addToSSELog() {
-        sseLog.add(getSSE());
+        if (sseBuffer == null || sseBuffer.length != numOuts) sseBuffer = new double[numOuts];
+        calcSSE(sseBuffer);
+        sseLog.add(sseBuffer);
+    }
+    /**
+     * return the latest SSE in the log for the given output
+     * @param whichOut
+     * @return	the SSE
+     */
+    public double lastSSE(int whichOut) {
+        return sseLog.last(whichOut);
     }
     /**
      * return an arraylist of the SSEs for the given output during training
@@ -479,10 +857,23 @@ public class DataSet {
      * @return
      */
     public ArrayList<Double> getSSELog(int whichOut) {
-        ArrayList<Double> ans = new ArrayList<Double>();			// create space
-        for (int ct=0; ct<sizeSSELog(); ct++) ans.add(sseLog.get(ct).get(whichOut));
-        // add the whichOut'th SSE to the list
-        return ans;													// return answer
+        return sseLog.toList(whichOut);
+    }
+    /**
+     * return an arraylist of at most maxPoints SSEs for the given output, for plotting
+     * @param whichOut
+     * @param maxPoints		if more epochs than this, each value is the mean of a run of epochs
+     * @return
+     */
+    public ArrayList<Double> getSSELog(int whichOut, int maxPoints) {
+        return sseLog.downsampled(whichOut, maxPoints);
+    }
+    /**
+     * return the log of SSEs itself, which also has the minimum, maximum and mean of each output
+     * @return	the log
+     */
+    public SSELog getSSELog() {
+        return sseLog;
     }
     /**
      * @param args
@@ -491,7 +882,7 @@ public class DataSet {
         // test of dats set
         DataSet AllXor = new DataSet("2 3 %.0f %.0f %.2f;x1 x2 AND OR XOR;0 0 0 0 0;0 1 0 1 1;1 0 0 1 1;1 1 1 1 0");
         System.out.print(AllXor.toString(true, true));
-        DataSet Other = new DataSet(DataSet.GetFile("other.txt"));
+        DataSet Other = DataSet.LoadFile("other.txt");
         System.out.print(Other.toString(true, true));
     }
 }
\ No newline at end of file
@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author shsmchlr
+ * Compact binary file format for DataSet and ScaledDataSet, so sets need not be parsed from text
+ * File has a header, all little endian:
+ * 		int magic "NNDS", int version, int flags (FLOATS and/or SCALED), int numIns, numOuts, numItems
+ * 		then the three print formats and the names of the inputs and outputs, each as int length + UTF-8
+ * 		then, if SCALED, the min and max values of the inputs and of the targets, as doubles
+ * this is padded to a multiple of 8 bytes, then come the inputs of all items, one item after
+ * another, then the targets, as doubles or (if FLOATS) floats; for a ScaledDataSet they are scaled.
+ * Files are read and written through memory mapping, with no parsing. When values are held as doubles,
+ * the data set reads its inputs and targets straight from the mapping rather than copying them, so
+ * jobs using the same file share one copy in the page cache, and loading a set takes no time however
+ * big it is; the networks copy the inputs of each block of items as they use them.
+ * If inputs are to be held as floats, or the file holds floats, values are copied into arrays.
+ */
+public class DataSetFile {
+
+    static final int MAGIC = 0x5344_4E4E;		// "NNDS" when read as little endian bytes
+    static final int VERSION = 1;
+    static final int FLOATS = 1;				// flag : values held as floats not doubles
+    static final int SCALED = 2;				// flag : set is a ScaledDataSet
+    private static final long MAX_MAP = 1L << 30;	// most bytes mapped at once
+
+    /**
+     * save data set d in file name
+     * @param d			data set
+     * @param name		file name
+     * @param asFloats	if true values held as floats, halving file size
+     * @throws IOException	if cannot write file
+     */
+    public static void save(DataSet d, String name, boolean asFloats) throws IOException {
+        boolean isScaled = d instanceof ScaledDataSet;
+        byte[][] strings = new byte[3 + d.inNames.size() + d.outNames.size()][];	// strings in header
+        int ct = 0;
+        for (String s : new String[] {d.inFormat, d.outFormat, d.rawFormat}) strings[ct++] = utf8(s);
+        for (String s : d.inNames) strings[ct++] = utf8(s);
+        for (String s : d.outNames) strings[ct++] = utf8(s);
+        int headerSize = 6 * 4;
+        for (byte[] s : strings) headerSize += 4 + s.length;
+        if (isScaled) headerSize += 2 * 8 * (d.numIns + d.numOuts);
+        headerSize = (headerSize + 7) & ~7;						// pad to multiple of 8
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt((asFloats ? FLOATS : 0) | (isScaled ? SCALED : 0));
+        header.putInt(d.numIns).putInt(d.numOuts).putInt(d.numItems);
+        for (byte[] s : strings) header.putInt(s.length).put(s);
+        if (isScaled) {
+            ScaledDataSet sd = (ScaledDataSet) d;
+            for (double[] vals : new double[][] {sd.minIns, sd.maxIns, sd.minTargets, sd.maxTargets})
+                for (double v : vals) header.putDouble(v);
+        }
+        header.rewind();
+
+        Path temp = Paths.get(name + ".tmp");		// written then moved, so a set mapped from name is unchanged
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) ch.write(header);
+            long num = (long) d.numItems * d.numIns;
+            long pos = (d.insMapped != null) ? writeValues(ch, headerSize, d.insMapped, num, asFloats)
+                     : (d.insData != null) ? writeValues(ch, headerSize, d.insData, num, asFloats)
+                                           : writeValues(ch, headerSize, d.insFloats, num, asFloats);
+            num = (long) d.numItems * d.numOuts;
+            if (d.targetsMapped != null) writeValues(ch, pos, d.targetsMapped, num, asFloats);
+            else writeValues(ch, pos, d.targetsData, num, asFloats);
+        }
+        Files.move(temp, Paths.get(name), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * load data set from file name, reading its values from the mapped file if it holds doubles
+     * @param name		file name
+     * @return			the data set, which is a ScaledDataSet if one was saved
+     * @throws IOException	if cannot read file, or it is not a data set file
+     */
+    public static DataSet load(String name) throws IOException {
+        return load(name, false);
+    }
+
+    /**
+     * load data set from file name, optionally holding its inputs as floats, so saving space
+     * @param name		file name
+     * @param floatIns	if true inputs are held as floats
+     * @return			the data set, which is a ScaledDataSet if one was saved
+     * @throws IOException	if cannot read file, or it is not a data set file
+     */
+    public static DataSet load(String name, boolean floatIns) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(ch.size(), MAX_MAP));
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException(name + " is not a data set file of version " + VERSION);
+            int flags = header.getInt();
+            DataSet d = ((flags & SCALED) != 0) ? new ScaledDataSet() : new DataSet();
+            d.numIns = header.getInt();
+            d.numOuts = header.getInt();
+            d.numItems = header.getInt();
+            d.inFormat = readString(header);
+            d.outFormat = readString(header);
+            d.rawFormat = readString(header);
+            for (int ct=0; ct<d.numIns; ct++) d.inNames.add(readString(header));
+            for (int ct=0; ct<d.numOuts; ct++) d.outNames.add(readString(header));
+            if (d instanceof ScaledDataSet) {
+                ScaledDataSet sd = (ScaledDataSet) d;
+                sd.minIns = readDoubles(header, d.numIns);
+                sd.maxIns = readDoubles(header, d.numIns);
+                sd.minTargets = readDoubles(header, d.numOuts);
+                sd.maxTargets = readDoubles(header, d.numOuts);
+            }
+            long pos = (header.position() + 7) & ~7;				// data after padding
+            boolean asFloats = (flags & FLOATS) != 0;
+            long insBytes = (long) d.numItems * d.numIns * (asFloats ? 4 : 8);
+            long targetBytes = (long) d.numItems * d.numOuts * (asFloats ? 4 : 8);
+            if (ch.size() < pos + insBytes + targetBytes)
+                throw new IOException(name + " is not a complete data set file");
+            d.outsData = new double[d.numItems * d.numOuts];
+            if (!floatIns && !asFloats && insBytes <= Integer.MAX_VALUE && targetBytes <= Integer.MAX_VALUE) {
+                d.insMapped = mapDoubles(ch, pos, insBytes);			// read values from file as used
+                d.targetsMapped = mapDoubles(ch, pos + insBytes, targetBytes);
+                return d;
+            }
+            d.targetsData = new double[d.numItems * d.numOuts];
+            if (floatIns) {
+                d.insFloats = new float[d.numItems * d.numIns];
+                pos = readValues(ch, pos, d.insFloats, asFloats);
+            }
+            else {
+                d.insData = new double[d.numItems * d.numIns];
+                pos = readValues(ch, pos, d.insData, asFloats);
+            }
+            readValues(ch, pos, d.targetsData, asFloats);
+            return d;
+        }
+    }
+
+    /**
+     * map part of the file as a read only buffer of doubles, which stays valid when the file is closed
+     * @param ch	channel of file
+     * @param pos	position of first value
+     * @param bytes	number of bytes
+     * @return		the buffer
+     */
+    private static DoubleBuffer mapDoubles(FileChannel ch, long pos, long bytes) throws IOException {
+        return ch.map(FileChannel.MapMode.READ_ONLY, pos, bytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    /**
+     * convert a text data set file, as read by LoadFile, into a binary one
+     * @param textName		name of text file
+     * @param binaryName	name of binary file
+     * @param isScaled		true if is for a ScaledDataSet, so first two items are min and max values
+     * @param asFloats		if true values held as floats
+     * @throws IOException	if cannot write file
+     */
+    public static void convert(String textName, String binaryName, boolean isScaled, boolean asFloats)
+            throws IOException {
+        save(isScaled ? ScaledDataSet.LoadFile(textName) : DataSet.LoadFile(textName), binaryName, asFloats);
+    }
+
+    /**
+     * write num values from vals to the channel, starting at pos, mapping part of the file at a time
+     * @return	position after the values
+     */
+    private static long writeValues(FileChannel ch, long pos, double[] vals, long num, boolean asFloats)
+            throws IOException {
+        int size = asFloats ? 4 : 8;
+        int done = 0;
+        while (done < num) {
+            int chunk = (int) Math.min(num - done, MAX_MAP / size);
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_WRITE, pos, (long) chunk * size);
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+            if (asFloats) {
+                FloatBuffer fb = mb.asFloatBuffer();
+                for (int ct=0; ct<chunk; ct++) fb.put(ct, (float) vals[done + ct]);
+            }
+            else mb.asDoubleBuffer().put(vals, done, chunk);		// bulk copy
+            done += chunk;
+            pos += (long) chunk * size;
+        }
+        return pos;
+    }
+
+    /**
+     * write num values from vals, which holds floats, to the channel, starting at pos
+     * @return	position after the values
+     */
+    private static long writeValues(FileChannel ch, long pos, float[] vals, long num, boolean asFloats)
+            throws IOException {
+        int size = asFloats ? 4 : 8;
+        int done = 0;
+        while (done < num) {
+            int chunk = (int) Math.min(num - done, MAX_MAP / size);
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_WRITE, pos, (long) chunk * size);
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+            if (asFloats) mb.asFloatBuffer().put(vals, done, chunk);			// bulk copy
+            else {
+                DoubleBuffer db = mb.asDoubleBuffer();
+                for (int ct=0; ct<chunk; ct++) db.put(ct, vals[done + ct]);
+            }
+            done += chunk;
+            pos += (long) chunk * size;
+        }
+        return pos;
+    }
+
+    /**
+     * write num values from buffer vals, eg mapped from another file, to the channel, starting at pos
+     * @return	position after the values
+     */
+    private static long writeValues(FileChannel ch, long pos, DoubleBuffer vals, long num, boolean asFloats)
+            throws IOException {
+        int size = asFloats ? 4 : 8;
+        int done = 0;
+        while (done < num) {
+            int chunk = (int) Math.min(num - done, MAX_MAP / size);
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_WRITE, pos, (long) chunk * size);
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+            if (asFloats) {
+                FloatBuffer fb = mb.asFloatBuffer();
+                for (int ct=0; ct<chunk; ct++) fb.put(ct, (float) vals.get(done + ct));
+            }
+            else mb.asDoubleBuffer().put(vals.slice(done, chunk));	// bulk copy
+            done += chunk;
+            pos += (long) chunk * size;
+        }
+        return pos;
+    }
+
+    /**
+     * read values into vals from the channel, starting at pos, mapping part of the file at a time
+     * @return	position after the values
+     */
+    private static long readValues(FileChannel ch, long pos, double[] vals, boolean asFloats)
+            throws IOException {
+        int size = asFloats ? 4 : 8;
+        int done = 0;
+        while (done < vals.length) {
+            int chunk = (int) Math.min(vals.length - done, MAX_MAP / size);
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, pos, (long) chunk * size);
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+            if (asFloats) {
+                FloatBuffer fb = mb.asFloatBuffer();
+                for (int ct=0; ct<chunk; ct++) vals[done + ct] = fb.get(ct);
+            }
+            else {
+                DoubleBuffer db = mb.asDoubleBuffer();
+                db.get(vals, done, chunk);								// bulk copy
+            }
+            done += chunk;
+            pos += (long) chunk * size;
+        }
+        return pos;
+    }
+
+    /**
+     * read values into vals, which holds floats, from the channel, starting at pos
+     * @return	position after the values
+     */
+    private static long readValues(FileChannel ch, long pos, float[] vals, boolean asFloats)
+            throws IOException {
+        int size = asFloats ? 4 : 8;
+        int done = 0;
+        while (done < vals.length) {
+            int chunk = (int) Math.min(vals.length - done, MAX_MAP / size);
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, pos, (long) chunk * size);
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+            if (asFloats) mb.asFloatBuffer().get(vals, done, chunk);			// bulk copy
+            else {
+                DoubleBuffer db = mb.asDoubleBuffer();
+                for (int ct=0; ct<chunk; ct++) vals[done + ct] = (float) db.get(ct);
+            }
+            done += chunk;
+            pos += (long) chunk * size;
+        }
+        return pos;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static double[] readDoubles(ByteBuffer b, int num) {
+        double[] ans = new double[num];
+        for (int ct=0; ct<num; ct++) ans[ct] = b.getDouble();
+        return ans;
+    }
+
+    /**
+     * convert text data set files to binary ones
+     * @param args	textName binaryName [-scaled] [-float]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: DataSetFile textName binaryName [-scaled] [-float]");
+            return;
+        }
+        boolean isScaled = false, asFloats = false;
+        for (int ct=2; ct<args.length; ct++) {
+            if (args[ct].equals("-scaled")) isScaled = true;
+            else if (args[ct].equals("-float")) asFloats = true;
+        }
+        convert(args[0], args[1], isScaled, asFloats);
+        DataSet d = load(args[1]);
+        System.out.println("Converted " + d.numInSet() + " items of " + d.numInputs() + " inputs and "
+                + d.numOutputs() + " outputs");
+    }
+}
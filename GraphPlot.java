@@ -171,14 +171,28 @@ public class GraphPlot {
      * @param graphYOff	offset of where on canvas graph shown
      */
     public void yPlot(String title, ArrayList<Double> yVals, int graphYOff) {
+        yPlot(title, yVals, yVals.size(), graphYOff);
+    }
+
+    /**
+     * Plot a graph of the given y values, spread evenly over x values 0..xMax
+     * (as when each y value is the mean of a run of epochs, so there are fewer y values than epochs)
+     * @param title		title of graph
+     * @param yVals		the y values
+     * @param xMax		maximum x value, eg number of epochs
+     * @param graphYOff	offset of where on canvas graph shown
+     */
+    public void yPlot(String title, ArrayList<Double> yVals, int xMax, int graphYOff) {
         findMinMax(yVals, null);
+        maxX = xMax;
         setUpGraph(title, graphYOff);
         labelX(maxX);
         gc.setStroke(Color.BLUE);
         gc.setLineWidth(2);
         gc.beginPath();
+        double xStep = (double) xMax / yVals.size();		// epochs per y value
         for (int ct=0; ct<yVals.size(); ct++) {
-            double xval = xScale(ct+0.5);
+            double xval = xScale((ct+0.5) * xStep);
             double yval = yScale(yVals.get(ct));
             if (ct>0) gc.lineTo(xval, yval); else gc.moveTo(xval, yval);
         }
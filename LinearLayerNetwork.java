@@ -1,25 +1,105 @@
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * @author shsmchlr
- * This is a class for a layer of neurons with linear activation
+ * This is a class for a layer of neurons with linear activation, or another set by setActivation
  * All such neurons share the same inputs.
  */
-public class LinearLayerNetwork {
+public class LinearLayerNetwork implements Cloneable {
     /**
-     * data are arraylists of weights and the change in weights
-     * and of the outputs and deltas
+     * data are arrays of weights and the change in weights
+     * and of the gradients summed over a batch of items, and of the outputs and deltas
+     * weights are stored neuron by neuron, each neuron having its bias weight then numInputs weights
+     * starting at index wtStart, as the arrays may hold the weights of a whole chain of layers
      * and also how many inputs, neurons and weights
      * also has data set used with network
      */
-    protected ArrayList<Double> weights;
-    protected ArrayList<Double> changeInWeights;
-    protected ArrayList<Double> outputs;
-    protected ArrayList<Double> deltas;
+    protected double[] weights;
+    protected double[] changeInWeights;
+    protected double[] gradients;				// sum over current batch of input * delta for each weight
+    protected double[] outputs;
+    protected double[] deltas;
+    protected int wtStart = 0;					// index of first weight of this layer in arrays
     protected int numInputs, numNeurons, numWeights;
     protected DataSet trainData;
+    protected Activation activation = Activation.LINEAR;	// activation function of the neurons
+    protected Optimizer optimizer = new Optimizer.Momentum();	// how weights changed after each batch
+    /**
+     * when a block of items is processed at once, have arrays with the outputs and deltas
+     * of each item in the block, one item after another
+     */
+    protected double[] blockOutputs;
+    protected double[] blockDeltas;
+    /**
+     * if computing in single precision, the weighted sums of a block are found using floats,
+     * so have the weights, the inputs and the sums of the block as floats;
+     * gradients and weights are still doubles, so small changes to them are not lost
+     */
+    private boolean floatCompute = false;
+    private float[] weightsF, blockInsF, blockOutsF;
+    private double[] inBuffer;					// inputs copied from a data set holding them as floats
+    private double[] outErrors, blockOutErrors;	// errors of the outputs of an item, and of a block, when learning
+    /**
+     * for learning a batch in parallel, have a number of workers, each a copy of the network
+     * which shares its weights but has its own outputs, deltas and gradients,
+     * and the pool of threads on which they run
+     */
+    private int numWorkers = 1;
+    private LinearLayerNetwork[] workers;
+    private ForkJoinPool workerPool;
+    private LinearLayerNetwork chainHead = this;	// first layer of the chain this is in, whose workers copy it
+    private EpochListener epochListener;		// if not null, told when each epoch learnt
+    private Checkpointer checkpointer;			// if not null, saves network every so often when learning
+    private ModelPublisher publisher;			// if not null, publishes copy of network for other threads
+    /**
+     * if items are learnt in a shuffled order, have the generator used to shuffle them and
+     * the order, an array of item numbers, which is shuffled again at the start of each epoch
+     */
+    private Random shuffler;
+    private int[] order;
+
+    /**
+     * interface for an object which is told when each epoch of learning is done
+     */
+    public interface EpochListener {
+        /**
+         * called, on the thread doing the learning, after each epoch
+         * @param epoch	number of epochs learnt so far
+         * @return		true to carry on learning, false to stop
+         */
+        boolean epochLearnt(int epoch);
+    }
+
+    /**
+     * task in which a worker presents items from .. to-1 of a data set, putting outputs in the set,
+     * and if learning, adds to its own gradients (items being in the given order, if not null)
+     */
+    private static class ItemsShard extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final LinearLayerNetwork worker;
+        private final DataSet d;
+        private final int[] order;
+        private final int from, to;
+        private final boolean learn;
+
+        ItemsShard(LinearLayerNetwork worker, DataSet d, int[] order, int from, int to, boolean learn) {
+            this.worker = worker;
+            this.d = d;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.learn = learn;
+        }
+        protected void compute() {
+            if (learn) worker.learnItems(d, order, from, to);
+            else worker.presentItems(d, from, to);
+        }
+    }
 
     /**
      * Constructor for neuron
@@ -33,35 +113,30 @@ public class LinearLayerNetwork {
         numWeights = (numInputs + 1) * numNeurons;	// for convenience calculate number of weights
         // each neuron has numInputs + 1 weights (+1 because of bias weight)
 
-        weights = new ArrayList<Double>();			// create array list for weights
-        changeInWeights = new ArrayList<Double>();	// and for the change in weights
-        outputs = new ArrayList<Double>();			// create array list for outputs
-        deltas = new ArrayList<Double>();			// and for the change in deltas
-        for (int ct=0; ct<numWeights; ct++) {		// for each weight
-            weights.add(0.0);						// add next weight as 0
-            changeInWeights.add(0.0);				// add next change in weight, value 0
-        }
-        for (int ct=0; ct<numNeurons; ct++) {		// for each neuron
-            outputs.add(0.0);						// add a zero output
-            deltas.add(0.0);						// add a zero delta
-        }
+        weights = new double[numWeights];			// create array for weights, all 0
+        changeInWeights = new double[numWeights];	// and for the change in weights, all 0
+        gradients = new double[numWeights];			// and for the gradients, all 0
+        outputs = new double[numNeurons];			// create array for outputs
+        deltas = new double[numNeurons];			// and for the deltas
         trainData = data;							// remember data set used for training
     }
     /**
      * calcOutputs of neuron
-     * @param nInputs	arraylist with the neuron inputs
+     * @param nInputs	array with the neuron inputs
+     * @param inOffset	index in nInputs of the first input
      * Calculates weighted sum being weight(0) + inputs(0..n) * weights(1..n+1)
      */
-    protected void calcOutputs(ArrayList<Double> nInputs) {
-        int wtIndex = 0;									// used to index weights in order
+    protected void calcOutputs(double[] nInputs, int inOffset) {
+        int wtIndex = wtStart;									// used to index weights in order
         double output;
         for (int neuronct = 0; neuronct<numNeurons; neuronct++) {
-            output = weights.get(wtIndex++);						// start with bias weight( * 1)
+            output = weights[wtIndex++];						// start with bias weight( * 1)
             for (int inputct=0; inputct<numInputs; inputct++) 		// for remaining weights
-                output += nInputs.get(inputct) * weights.get(wtIndex++);
+                output += nInputs[inOffset + inputct] * weights[wtIndex++];
             // add weight*appropriate input and move to next weight
-            outputs.set(neuronct, output);			// set calculated output as the neuron output
+            outputs[neuronct] = output;				// set calculated output as the neuron output
         }
+        activation.outputs(outputs, 0, numNeurons);		// then pass through activation function
     }
     /**
      * outputsToDataSet to the given data set
@@ -72,31 +147,155 @@ public class LinearLayerNetwork {
         d.setOutputs(ct, outputs);							// just store outputs in data set
     }
 
+    /**
+     * calcOutputs of neurons for a block of items at once, putting them in blockOutputs
+     * @param nInputs	array with inputs of the items, one item after another
+     * @param inOffset	index in nInputs of the first input of the first item
+     * @param rows		number of items, at most MatrixKernel.BLOCK_ROWS
+     */
+    protected void calcBlockOutputs(double[] nInputs, int inOffset, int rows) {
+        if (blockOutputs == null) {								// create block arrays when first used
+            blockOutputs = new double[MatrixKernel.BLOCK_ROWS * numNeurons];
+            blockDeltas = new double[MatrixKernel.BLOCK_ROWS * numNeurons];
+        }
+        if (floatCompute) calcBlockOutputsAsFloats(nInputs, inOffset, rows);
+        else MatrixKernel.multiplyRows(nInputs, inOffset, rows, numInputs, weights, wtStart, numNeurons, blockOutputs);
+        activation.outputs(blockOutputs, 0, rows*numNeurons);	// pass through activation function
+    }
+    /**
+     * find weighted sums of a block of items in single precision, putting them in blockOutputs
+     * @param nInputs	array with inputs of the items, one item after another
+     * @param inOffset	index in nInputs of the first input of the first item
+     * @param rows		number of items
+     */
+    private void calcBlockOutputsAsFloats(double[] nInputs, int inOffset, int rows) {
+        if (weightsF == null) {
+            weightsF = new float[numWeights];
+            blockInsF = new float[MatrixKernel.BLOCK_ROWS * numInputs];
+            blockOutsF = new float[MatrixKernel.BLOCK_ROWS * numNeurons];
+        }
+        for (int ct=0; ct<numWeights; ct++) weightsF[ct] = (float) weights[wtStart + ct];	// weights may have changed
+        for (int ct=0; ct<rows*numInputs; ct++) blockInsF[ct] = (float) nInputs[inOffset + ct];
+        MatrixKernel.multiplyRows(blockInsF, 0, rows, numInputs, weightsF, numNeurons, blockOutsF);
+        for (int ct=0; ct<rows*numNeurons; ct++) blockOutputs[ct] = blockOutsF[ct];
+    }
+    /**
+     * set whether blocks of items have their weighted sums found in single precision,
+     * which is faster, or double precision; items done one at a time always use double
+     * @param on	true for single precision
+     */
+    public void setFloatCompute(boolean on) {
+        floatCompute = on;
+        settingsChanged();										// so workers remade with this setting
+    }
+    /**
+     * return the array from which the inputs of rows items, starting at the ct'th, are read:
+     * the data set's own array, or if it holds them as floats, a buffer into which they are copied
+     * @param d		data set
+     * @param ct	first item
+     * @param rows	number of items
+     * @return		array of inputs
+     */
+    private double[] inputsOf(DataSet d, int ct, int rows) {
+        if (d.getInsData() != null) return d.getInsData();
+        if (inBuffer == null) inBuffer = new double[MatrixKernel.BLOCK_ROWS * numInputs];
+        d.copyIns(ct, rows, inBuffer);
+        return inBuffer;
+    }
+    /**
+     * return index in the array returned by inputsOf of the first input of the ct'th item
+     * @param d		data set
+     * @param ct	item
+     * @return		index
+     */
+    private int inputsOffset(DataSet d, int ct) {
+        return (d.getInsData() != null) ? d.insOffset(ct) : 0;
+    }
+    /**
+     * put outputs of a block of items into the given data set
+     * @param order	order of items, or null if in order
+     * @param ct	which item in the data set (or in the order) is first in block
+     * @param rows	number of items in block
+     * @param d		the data set
+     */
+    protected void blockOutputsToDataSet (int[] order, int ct, int rows, DataSet d) {
+        if (order == null) d.setOutputs(ct, rows, blockOutputs);	// just store outputs in data set
+        else d.setOutputs(order, ct, rows, blockOutputs);
+    }
+    /**
+     * can this network process a block of items at once, using calcBlockOutputs etc,
+     * rather than one item at a time
+     * @return	true if so
+     */
+    protected boolean usesBlocks() {
+        return true;
+    }
+
+    /**
+     * compute outputs of network for items from .. to-1 of the data set,
+     * these outputs are put back into the data set
+     * If there are enough items, they are done a block at a time
+     * @param d		data set
+     * @param from	first item
+     * @param to	one after last item
+     */
+    protected void presentItems(DataSet d, int from, int to) {
+        if (usesBlocks() && to - from >= MatrixKernel.MIN_BLOCK_ROWS) {
+            for (int ct=from; ct < to; ct += MatrixKernel.BLOCK_ROWS) {	// for each block of items
+                int rows = Math.min(MatrixKernel.BLOCK_ROWS, to - ct);
+                calcBlockOutputs(inputsOf(d, ct, rows), inputsOffset(d, ct), rows);	// calculate outputs
+                blockOutputsToDataSet(null, ct, rows, d);				// and put in data set
+            }
+        }
+        else for (int ct=from; ct < to; ct++) {				// for each item
+            calcOutputs(inputsOf(d, ct, 1), inputsOffset(d, ct));	// calculate output
+            outputsToDataSet(ct, d);							// and put in data set
+        }
+    }
+
     /**
      * compute outputs of network by passing it each item in data set in turn,
      * these outputs are put back into the data set
+     * If there is more than one worker, the items are shared between them, each using its own
+     * outputs, so this network's outputs are unchanged
      * @param d	data set
      */
     public void presentDataSet(DataSet d) {
-        for (int ct=0; ct < d.numInSet(); ct++) {			// for each item in data set
-            calcOutputs(d.getIns(ct));						// calculate output
-            outputsToDataSet(ct, d);							// and put in data set
-        }
+        if (numWorkers > 1 && d.numInSet() >= numWorkers)
+            runOnWorkers(d, null, 0, d.numInSet(), false);		// present in parallel
+        else presentItems(d, 0, d.numInSet());				// or here
     }
 
     /**
      * find deltas
-     *	@param errors
+     *	@param errors	array with the error of each neuron
      */
-    protected void findDeltas(ArrayList<Double> errors) {
+    protected void findDeltas(double[] errors) {
         // use what is in errors to set the delta for each neuron in the layer
-        for(int nct = 0; nct < numNeurons; nct++){
-            for (int ct=0; ct<deltas.size(); ct++) {
-                deltas.set(ct, errors.get(ct)); 		//ToDo changed this to change each of the values of the deltas to equal the values of the errors of the same counth value
-            }
-        }
-
-
+        activation.deltas(errors, outputs, deltas, numNeurons);		// error * derivative of activation
+    }
+    /**
+     * find deltas of a block of items, putting them in blockDeltas
+     * @param errors	array with the error of each neuron, one item after another
+     * @param rows		number of items in block
+     */
+    protected void findBlockDeltas(double[] errors, int rows) {
+        activation.deltas(errors, blockOutputs, blockDeltas, rows*numNeurons);
+    }
+    /**
+     * set the activation function of the neurons in the layer
+     * @param act	the activation, eg Activation.RELU
+     */
+    public void setActivation(Activation act) {
+        activation = act;
+        settingsChanged();										// so workers remade with this setting
+    }
+    /**
+     * return the activation function of the neurons in the layer
+     * @return	the activation
+     */
+    public Activation getActivation() {
+        return activation;
     }
 
     /**
@@ -106,46 +305,64 @@ public class LinearLayerNetwork {
      * @return
      */
     private int weightIndex (int wNeuron, int wWeight) { // this needs to be implemented
-        int index = wWeight + wNeuron*(numWeights/numNeurons);// this changes the index into a value of within the limits
+        int index = wtStart + wWeight + wNeuron*(numWeights/numNeurons);// this changes the index into a value of within the limits
         return index;
         //ToDO not 100% sure what I am doing here
         // change this to return the index into weights list of the neuron
     }
 
     /**
-     * change a given weight
-     * @param wtIndex
-     * @param theIn
-     * @param delta
-     * @param learnRate
-     * @param momentum
+     * add input * delta for each weight in the layer of neurons to the gradients of the batch
+     * @param ins		array with the inputs to the layer
+     * @param inOffset	index in ins of the first input
      */
-    private void changeOneWeight(int wtIndex, double theIn, double delta, double learnRate, double momentum) {
-        // write code to update the changeInWeight and the Weight of the wtIndex'th weight
-        changeInWeights.set(wtIndex, theIn * delta * learnRate + changeInWeights.get(wtIndex) * momentum);
-        //ToDo this line sets the weight passing the input*delta*learning rate + prevChangeWeight*moment
-        weights.set(wtIndex, weights.get(wtIndex ) + changeInWeights.get(wtIndex));
-        //ToDo need to finish this and function below
+    protected void addToGradients(double[] ins, int inOffset) {
+        double theIn;
+        for(int nct = 0; nct < numNeurons; nct++) {// loops through each neuron
+            for (int wct = 0; wct < numInputs + 1; wct++) {// +1 to include the bias weight
+                if (wct == 0) theIn = 1.0;
+                else theIn = ins[inOffset + wct - 1]; // this says if the count is 0 it will use the bias weight
+                gradients[weightIndex(nct, wct)] += theIn * deltas[nct];		// add to the wct's gradient
+            }
+        }
+    }
+
+    /**
+     * add input * delta for each weight and each item in a block to the gradients of the batch
+     * @param ins		array with the inputs to the layer, one item after another
+     * @param inOffset	index in ins of the first input of the first item
+     * @param rows		number of items in block
+     */
+    protected void addBlockToGradients(double[] ins, int inOffset, int rows) {
+        MatrixKernel.addOuterProducts(blockDeltas, rows, numNeurons, ins, inOffset, numInputs, gradients, wtStart);
     }
 
     /**
-     * change all the weights in the layer of neurons
-     * @param ins
+     * change all the weights in the network, using the gradients found over a batch
+     * and then clear the gradients ready for the next batch
+     * As the weights of a chain of layers are in one array, they are all changed in one call
+     * of the optimizer
      * @param learnRate
      * @param momentum
+     * @param batchCount	how many items were in the batch
      */
-    protected void changeAllWeights(ArrayList<Double> ins, double learnRate, double momentum) {
-        // write code to change all weights in the layer
-        double theIn;// ToDo does not currently account for the number of neurons, this will only loop through one neuron
-        for(int nct = 0; nct < numNeurons; nct++) {// loops through each neuron
-            for (int wct = 0; wct < ins.size() + 1; wct++) {// +1 to include the bias weight
-                if (wct == 0) theIn = 1.0;
-                else theIn = ins.get(wct - 1); // this says if the count is 0 it will use the bias weight
-                changeOneWeight(weightIndex(nct, wct), theIn, deltas.get(nct), learnRate, momentum);        // change the wct's weight
-                //ToDo, the function has been changed to deltas.size() from weights.size()
-            }
-        }
-
+    protected void changeAllWeights(double learnRate, double momentum, int batchCount) {
+        optimizer.changeWeights(weights, changeInWeights, gradients, wtStart, wtStart + getNumWeights(),
+                                batchCount, learnRate, momentum);
+    }
+    /**
+     * set how the weights are changed after each batch; the optimizer should be used only by this network
+     * @param opt	the optimizer, eg new Optimizer.Adam(0.9, 0.999, 1e-8)
+     */
+    public void setOptimizer(Optimizer opt) {
+        optimizer = opt;
+    }
+    /**
+     * return how the weights are changed after each batch
+     * @return	the optimizer
+     */
+    public Optimizer getOptimizer() {
+        return optimizer;
     }
 
     /**
@@ -156,32 +373,287 @@ public class LinearLayerNetwork {
      * @param momentum	momentum constant
      */
     public void learnDataSet(DataSet d, double learnRate, double momentum) {
-        for (int ct=0; ct < d.numInSet(); ct++) {				// for each item in set
-            calcOutputs(d.getIns(ct));							// calc outputs
-            outputsToDataSet(ct, d);								// put in data set
-            findDeltas(d.getErrors(ct));						// calc deltas, from the errors
-            changeAllWeights(d.getIns(ct), learnRate, momentum);// change the weights
+        learnDataSet(d, learnRate, momentum, 1);				// change weights after every item
+    }
+
+    /**
+     * for items from .. to-1 of the data set, calculate the output, the error and delta,
+     * and add to the gradients; the weights are not changed
+     * If order is not null, the items are order[from] .. order[to-1], so a shuffled order
+     * If there are enough items, they are done a block at a time, and if in a shuffled order,
+     * the inputs of each block are first gathered into one array
+     * @param d		data set
+     * @param order	order of items, or null if in order
+     * @param from	first item (or index in order)
+     * @param to	one after last item
+     */
+    protected void learnItems(DataSet d, int[] order, int from, int to) {
+        if (usesBlocks() && to - from >= MatrixKernel.MIN_BLOCK_ROWS) {
+            if (blockOutErrors == null) blockOutErrors = new double[MatrixKernel.BLOCK_ROWS * d.numOutputs()];
+            double[] errors = blockOutErrors;								// errors of block
+            for (int ct=from; ct < to; ct += MatrixKernel.BLOCK_ROWS) {		// for each block of items
+                int rows = Math.min(MatrixKernel.BLOCK_ROWS, to - ct);
+                double[] ins = (order == null) ? inputsOf(d, ct, rows) : gatherInputs(d, order, ct, rows);
+                int inOffset = (order == null) ? inputsOffset(d, ct) : 0;	// inputs of block
+                calcBlockOutputs(ins, inOffset, rows);						// calc outputs
+                blockOutputsToDataSet(order, ct, rows, d);					// put in data set
+                if (order == null) d.getErrors(ct, rows, errors);			// find the errors
+                else d.getErrors(order, ct, rows, errors);
+                findBlockDeltas(errors, rows);								// calc deltas
+                addBlockToGradients(ins, inOffset, rows);					// add to gradients
+            }
+            return;
+        }
+        if (outErrors == null) outErrors = new double[d.numOutputs()];
+        double[] errors = outErrors;							// space for errors of each item
+        for (int ct=from; ct < to; ct++) {						// for each item
+            int item = (order == null) ? ct : order[ct];
+            double[] ins = inputsOf(d, item, 1);				// inputs of item
+            calcOutputs(ins, inputsOffset(d, item));			// calc outputs
+            outputsToDataSet(item, d);							// put in data set
+            d.getErrors(item, errors);							// find the errors
+            findDeltas(errors);									// calc deltas, from the errors
+            addToGradients(ins, inputsOffset(d, item));			// add to gradients
+        }
+    }
+
+    /**
+     * gather the inputs of items order[ct] .. order[ct+rows-1] into one array
+     * @param d		data set
+     * @param order	order of items
+     * @param ct	index in order of first
+     * @param rows	number of items
+     * @return		array with the inputs, one item after another, from index 0
+     */
+    private double[] gatherInputs(DataSet d, int[] order, int ct, int rows) {
+        if (inBuffer == null) inBuffer = new double[MatrixKernel.BLOCK_ROWS * numInputs];
+        d.copyIns(order, ct, rows, inBuffer);
+        return inBuffer;
+    }
+
+    /**
+     * set whether items are learnt in a shuffled order, which is changed every epoch
+     * @param rgen	generator used to shuffle the items, so seeding it makes the orders
+     * 				the same on each run; or null to learn items in the order they are in the set
+     */
+    public void setShuffle(Random rgen) {
+        shuffler = rgen;
+        order = null;
+    }
+
+    /**
+     * shuffle the order of the n items of a data set, using Fisher-Yates, so every order is
+     * equally likely; the order is made afresh if the set is a different size
+     * @param n		number of items
+     * @return		array of item numbers in their new order
+     */
+    private int[] shuffleOrder(int n) {
+        if (order == null || order.length != n) {
+            order = new int[n];
+            for (int ct=0; ct<n; ct++) order[ct] = ct;
+        }
+        for (int ct=n-1; ct>0; ct--) {							// swap each in turn with one before it
+            int other = shuffler.nextInt(ct + 1);
+            int temp = order[ct];
+            order[ct] = order[other];
+            order[other] = temp;
+        }
+        return order;
+    }
+
+    /**
+     * present, or learn, items from .. to-1 of the data set by splitting them evenly between the
+     * workers, each using its own outputs, deltas and gradients in parallel,
+     * then, if learning, add the workers' gradients, in order, to those of this network
+     * As the split and the order of adding depend only on the number of workers,
+     * the result is the same every time for a given number of workers
+     * @param d		data set
+     * @param order	order of items, or null if in order
+     * @param from	first item
+     * @param to	one after last item
+     * @param learn	true if learning, so gradients are found
+     */
+    private void runOnWorkers(DataSet d, int[] order, int from, int to, boolean learn) {
+        if (workers == null) {									// create workers when first needed
+            workers = new LinearLayerNetwork[numWorkers];
+            for (int ct=0; ct<numWorkers; ct++) workers[ct] = workerCopy();
+            workerPool = new ForkJoinPool(numWorkers);
+        }
+        ItemsShard[] shards = new ItemsShard[numWorkers];
+        for (int ct=0; ct<numWorkers; ct++) {					// give each worker its share of items
+            shards[ct] = new ItemsShard(workers[ct], d, order, from + (to-from)*ct/numWorkers,
+                                        from + (to-from)*(ct+1)/numWorkers, learn);
+            workerPool.execute(shards[ct]);						// and start it
+        }
+        for (int ct=0; ct<numWorkers; ct++) {					// then, in order, wait for each
+            shards[ct].join();
+            if (learn) addGradients(workers[ct]);				// and add its gradients to these
+        }
+    }
+
+    /**
+     * adapt the network in batches, by inputting each item from the data set in turn, calculating
+     * the output, the error and delta, and adding to the gradients,
+     * then adjusting all the weights once at the end of each batch
+     * If there is more than one worker, the items in each batch are shared between them
+     * If shuffling, the items are put in a new order first, so each batch has different items
+     * @param d			data set
+     * @param learnRate	learning rate constant
+     * @param momentum	momentum constant
+     * @param batchSize	number of items per batch: 1 for online learning, 0 for whole set in one batch
+     */
+    public void learnDataSet(DataSet d, double learnRate, double momentum, int batchSize) {
+        if (batchSize <= 0) batchSize = d.numInSet();			// 0 means one batch for whole set
+        int[] items = (shuffler != null) ? shuffleOrder(d.numInSet()) : null;	// order of items
+        for (int start=0; start < d.numInSet(); start += batchSize) {	// for each batch
+            int end = Math.min(start + batchSize, d.numInSet());
+            if (numWorkers > 1 && end - start >= numWorkers)
+                runOnWorkers(d, items, start, end, true);		// learn batch in parallel
+            else learnItems(d, items, start, end);				// or here
+            changeAllWeights(learnRate, momentum, end - start);	// change the weights
         }
         d.addToSSELog();
     }
 
     /**
-     * return the array list containing the outputs of this layer of neurons
+     * set how many workers, each on its own thread, share the items of a batch when learning,
+     * or of a data set when presenting it
+     * @param num	number of workers : 1 means all done in the calling thread
+     */
+    public void setNumWorkers(int num) {
+        numWorkers = Math.max(num, 1);
+        workers = null;											// workers created when next needed
+        if (workerPool != null) workerPool.shutdown();
+        workerPool = null;
+    }
+
+    /**
+     * called when a setting of this layer, eg its activation, is changed: the workers of the first
+     * layer of the chain have copies of all its layers, so they are remade when next needed
+     */
+    protected void settingsChanged() {
+        chainHead.setNumWorkers(chainHead.numWorkers);
+    }
+
+    /**
+     * note that this layer, and any after it, are in the chain whose first layer is head
+     * @param head	first layer
+     */
+    protected void setChainHead(LinearLayerNetwork head) {
+        chainHead = head;
+    }
+
+    /**
+     * return how many workers share the items of a batch
+     * @return	number of workers
+     */
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    /**
+     * return a copy of this network, for use by a worker, which shares the weights of this one,
+     * but has its own outputs, deltas and gradients
+     * @return	the copy
+     */
+    protected LinearLayerNetwork workerCopy() {
+        LinearLayerNetwork copy;
+        try {
+            copy = (LinearLayerNetwork) clone();				// copy, sharing weights
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);					// cannot happen as is Cloneable
+        }
+        copy.outputs = new double[numNeurons];					// give copy own outputs
+        copy.deltas = new double[numNeurons];					// deltas
+        copy.gradients = new double[gradients.length];			// and gradients
+        copy.blockOutputs = null;								// block arrays made when it needs them
+        copy.blockDeltas = null;
+        copy.weightsF = null;
+        copy.blockInsF = null;
+        copy.blockOutsF = null;
+        copy.inBuffer = null;
+        copy.outErrors = null;
+        copy.blockOutErrors = null;
+        copy.numWorkers = 1;									// it does not have workers of its own
+        copy.workers = null;
+        copy.workerPool = null;
+        copy.chainHead = copy;
+        return copy;
+    }
+
+    /**
+     * add the gradients of the given worker copy to those in this network, and clear them in the worker
+     * (for a chain of layers, those of all layers)
+     * @param worker	copy of this network
+     */
+    protected void addGradients(LinearLayerNetwork worker) {
+        int end = wtStart + getNumWeights();
+        for (int ct=wtStart; ct<end; ct++) {
+            gradients[ct] += worker.gradients[ct];
+            worker.gradients[ct] = 0.0;
+        }
+    }
+
+    /**
+     * return the array containing the outputs of this layer of neurons
      * @return
      */
-    protected ArrayList<Double> getOutputs() {
+    protected double[] getOutputs() {
         return outputs;
     }
 
     /**
-     * finding errors in this layer ...
-     * @return
+     * finding errors in the layer before this, being for each input the sum of the
+     * deltas of each neuron times the weight from that input
+     * @return	list of weighted deltas, one per input
      */
     public ArrayList<Double> weightedDeltas() {
-        ArrayList<Double> wtDeltas = new ArrayList<Double>();	// create array for answer
-        // write code here to populate the array list
+        double[] wtDeltas = new double[numInputs];
+        weightedDeltas(wtDeltas);
+        ArrayList<Double> ans = new ArrayList<Double>();	// create array for answer
+        for (double wd : wtDeltas) ans.add(wd);
+        return ans;
+    }
+    /**
+     * find weighted deltas, as above, putting them in the given array
+     * @param wtDeltas	array of at least numInputs into which they are written
+     */
+    protected void weightedDeltas(double[] wtDeltas) {
+        Arrays.fill(wtDeltas, 0, numInputs, 0.0);
+        for (int nct=0; nct<numNeurons; nct++) {				// add delta * weight for each neuron
+            double delta = deltas[nct];
+            int wtIndex = weightIndex(nct, 1);					// index of its first input weight
+            for (int ict=0; ict<numInputs; ict++)
+                wtDeltas[ict] += delta * weights[wtIndex + ict];
+        }
+    }
+    /**
+     * find weighted deltas for a block of items, from blockDeltas
+     * @param wtDeltas	array into which they are written, one item after another
+     * @param rows		number of items in block
+     */
+    protected void blockWeightedDeltas(double[] wtDeltas, int rows) {
+        MatrixKernel.backMultiply(blockDeltas, rows, numNeurons, weights, wtStart, numInputs, wtDeltas);
+    }
 
-        return wtDeltas;
+    /**
+     * move the weights, changes in weights and gradients of the network into the given arrays,
+     * starting at index start, so a chain of layers can keep all of them in one set of arrays
+     * @param wts		array for weights
+     * @param changes	array for changes in weights
+     * @param grads		array for gradients
+     * @param start		index in the arrays of first weight of the network
+     * @return			index after its last weight
+     */
+    protected int useWeightArrays(double[] wts, double[] changes, double[] grads, int start) {
+        System.arraycopy(weights, wtStart, wts, start, numWeights);
+        System.arraycopy(changeInWeights, wtStart, changes, start, numWeights);
+        System.arraycopy(gradients, wtStart, grads, start, numWeights);
+        weights = wts;
+        changeInWeights = changes;
+        gradients = grads;
+        wtStart = start;
+        return start + numWeights;
     }
 
     /**
@@ -189,7 +661,7 @@ public class LinearLayerNetwork {
      * @param wtsSplit
      */
     protected void setWeights (String[] wtsSplit) {
-        for (int ct=0; ct<weights.size(); ct++) weights.set(ct, Double.parseDouble(wtsSplit[ct]));
+        for (int ct=0; ct<numWeights; ct++) weights[wtStart+ct] = Double.parseDouble(wtsSplit[ct]);
     }			// for each item, set weight by converting string to double
     /**
      * Load the weights with the values in the String wts
@@ -203,7 +675,7 @@ public class LinearLayerNetwork {
      * @param rgen	random number generator
      */
     public void setWeights (Random rgen) {
-        for (int ct=0; ct<weights.size(); ct++) weights.set(ct,2.0*rgen.nextDouble() - 1);
+        for (int ct=0; ct<numWeights; ct++) weights[wtStart+ct] = 2.0*rgen.nextDouble() - 1;
     }
     /**
      * return how many weights there are in the neuron
@@ -213,23 +685,47 @@ public class LinearLayerNetwork {
 
         return numWeights;			// use number of weights variable
     }
+    /**
+     * copy the weights of the network into snap, starting at index offset
+     * @param snap		array into which copied
+     * @param offset	index of first weight
+     * @return			index after the last weight copied
+     */
+    protected int copyWeightsTo(double[] snap, int offset) {
+        System.arraycopy(weights, wtStart, snap, offset, getNumWeights());
+        return offset + getNumWeights();
+    }
+    /**
+     * set the weights of the network from snap, starting at index offset, as copied by copyWeightsTo;
+     * the changes in weights and the optimizer state are cleared, so momentum does not carry on from before
+     * @param snap		array from which copied
+     * @param offset	index of first weight
+     * @return			index after the last weight copied
+     */
+    protected int copyWeightsFrom(double[] snap, int offset) {
+        System.arraycopy(snap, offset, weights, wtStart, getNumWeights());
+        Arrays.fill(changeInWeights, wtStart, wtStart + getNumWeights(), 0.0);
+        optimizer.reset();
+        return offset + getNumWeights();
+    }
     /**
      * return all the weights in the layer as a string each separated by spaces
      * @return the string
      */
     public String getWeights() {
-        String s = "";									// set string to empty
-        for (int ct=0; ct<weights.size(); ct++) {
-            s = s + String.format("%.5f", weights.get(ct)) + " ";           // ToDo: this should return the weights as entered (check = success)
+        StringBuilder s = new StringBuilder();			// set string to empty
+        for (int ct=0; ct<numWeights; ct++) {
+            s.append(String.format("%.5f", weights[wtStart+ct])).append(' ');	// ToDo: this should return the weights as entered (check = success)
         }
-        return s;
+        return s.toString();
     }
     /**
      * initialise network before running
      */
     public void doInitialise() {
-        for (int ct=0; ct<changeInWeights.size(); ct++) changeInWeights.set(ct, 0.0);
-        // set the change in weights to be 0
+        Arrays.fill(changeInWeights, wtStart, wtStart+numWeights, 0.0);	// set the change in weights to be 0
+        Arrays.fill(gradients, wtStart, wtStart+numWeights, 0.0);		// and clear gradients of any part batch
+        optimizer.reset();											// and any state of the optimizer
         trainData.clearSSELog();
     }
     /**
@@ -260,16 +756,66 @@ public class LinearLayerNetwork {
      * 						At each epoch if numEpochs low, or do so at 10 of the epochs
      */
     public String doLearn (int numEpochs, double lRate, double momentum) {
+        return doLearn(numEpochs, lRate, momentum, 1);	// learn online, changing weights each item
+    }
+
+    /**
+     * get network to learn for numEpochs, changing weights after each batch of items
+     * @param numEpochs		number of epochs to learn
+     * @param lRate			learning rate
+     * @param momentum		momentum
+     * @param batchSize		number of items per batch: 1 for online learning, 0 for whole set
+     * @return				String with data about learning eg SSEs at relevant epochs
+     * 						At each epoch if numEpochs low, or do so at 10 of the epochs
+     */
+    public String doLearn (int numEpochs, double lRate, double momentum, int batchSize) {
         int epochsSoFar = trainData.sizeSSELog();		// SSE log indicates how many epochs so far
         String s = "";
         for (int ct=1; ct<=numEpochs; ct++) {			// for n epochs
-            learnDataSet(trainData, lRate, momentum);	// present data and adapt weights
-            if (numEpochs<20 || ct % (numEpochs/10) == 0) // print appropriate number of times
+            learnDataSet(trainData, lRate, momentum, batchSize);	// present data and adapt weights
+            boolean stop = !carryOn(ct+epochsSoFar);		// tell listener, which may stop learning
+            if (numEpochs<20 || ct % (numEpochs/10) == 0 || stop) // print appropriate number of times
                 s = s + addEpochString(ct+epochsSoFar) + " : " + trainData.dataAnalysis()+"\n";
+            if (stop) break;							// stop if listener says so
         }				// Epoch, and SSE, and if appropriate % correctly classified
         return s;
     }
 
+    /**
+     * tell the checkpointer, publisher and epoch listener, if any, that an epoch has been learnt
+     * @param epoch		number of epochs learnt so far
+     * @return			false if the listener says learning is to stop
+     */
+    protected boolean carryOn(int epoch) {
+        if (checkpointer != null) checkpointer.epochLearnt(epoch);	// save checkpoint if due
+        if (publisher != null) publisher.epochLearnt(epoch);		// and publish copy if due
+        return epochListener == null || epochListener.epochLearnt(epoch);
+    }
+
+    /**
+     * set the listener told as each epoch is learnt by doLearn, which can also stop learning
+     * @param listener	the listener, or null for none
+     */
+    public void setEpochListener(EpochListener listener) {
+        epochListener = listener;
+    }
+
+    /**
+     * set the checkpointer which saves the network during doLearn, eg every 1000 epochs
+     * @param cp	the checkpointer, or null for none
+     */
+    public void setCheckpointer(Checkpointer cp) {
+        checkpointer = cp;
+    }
+
+    /**
+     * set the publisher which, during doLearn, makes copies of the network which other threads use
+     * @param pub	the publisher, or null for none
+     */
+    public void setPublisher(ModelPublisher pub) {
+        publisher = pub;
+    }
+
     /**
      * @param args
      */
@@ -1,8 +1,9 @@
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
- * Class for a neuron with linear activation
+ * Class for a neuron with linear activation, or another set by setActivation
  * @author shsmchlr
  *
  */
@@ -15,6 +16,7 @@ public class LinearNeuron {
     protected ArrayList<Double> changeInWeights;
     protected double output, delta;
     protected DataSet trainData;
+    protected Activation activation = Activation.LINEAR;	// activation function
 
     /**
      * Constructor for neuron
@@ -32,13 +34,21 @@ public class LinearNeuron {
     }
     /**
      * calcOutput of neuron
-     * @param nInputs	arraylist with the neuron inputs
+     * @param nInputs	list with the neuron inputs
      * Does weighted sum being weight(0) + inputs(0..n) * weights(1..n+1)
      */
-    protected void calcOutput(ArrayList<Double> nInputs) {
+    protected void calcOutput(List<Double> nInputs) {
         output = weights.get(0);							// start with bias weight(* 1)
         for (int ct=1; ct<weights.size(); ct++)				// for remain weights
             output += nInputs.get(ct-1) * weights.get(ct);	// add weight*appropriate input
+        output = activation.output(output);					// pass through activation function
+    }
+    /**
+     * set the activation function of the neuron
+     * @param act	the activation, eg Activation.TANH
+     */
+    public void setActivation(Activation act) {
+        activation = act;
     }
 
     /**
@@ -66,7 +76,7 @@ public class LinearNeuron {
      *	@param error	compute the delta from the error passed
      */
     protected void findDelta(double error) {
-        delta = error;
+        delta = error * activation.derivative(output);		// error * derivative of activation
     }
 
     /**
@@ -85,11 +95,11 @@ public class LinearNeuron {
     }
     /**
      * change all the weights in the neuron
-     * @param ins		array list of the inputs to the neuron
+     * @param ins		list of the inputs to the neuron
      * @param learnRate	learning rate: change is learning rate * input * delta
      * @param momentum	momentum constant : change is also momentum * change in weight last time
      */
-    private void changeAllWeights(ArrayList<Double> ins, double learnRate, double momentum) {
+    private void changeAllWeights(List<Double> ins, double learnRate, double momentum) {
         double theIn;
         for (int wct = 0; wct < weights.size(); wct++) {			// for each weight
             if (wct == 0) theIn = 1.0; else theIn = ins.get(wct-1);
@@ -2,6 +2,12 @@ public class MLPwithDataSets extends MultiLayerNetwork {
 
     protected DataSet unseenData;			// unseen data set
     protected DataSet validationData;		// validation set : is set to null if that set is not being used
+    static final int VALID_WINDOW = 10;		// validation SSE is summed over this many epochs
+    protected int patience = 2;				// stop after this many windows with no improvement
+    private double[] bestWeights;			// snapshot of weights when validation SSE was least
+    private double windowSSE;				// validation SSE summed over current window
+    private double bestSSE = Double.MAX_VALUE;	// least such sum
+    private int bestEpoch, badWindows;		// when least, and windows since then
 
     /**
      * Constructor for the MLP
@@ -20,6 +26,15 @@ public class MLPwithDataSets extends MultiLayerNetwork {
         validationData = valid;
     }
 
+    /**
+     * set how many windows of VALID_WINDOW epochs learning continues when the summed SSE on the
+     * validation set is no less than the least so far
+     * @param numWindows	the patience, at least 1
+     */
+    public void setPatience(int numWindows) {
+        patience = Math.max(1, numWindows);
+    }
+
     /**
      * initialise network before learning ...
      */
@@ -27,7 +42,10 @@ public class MLPwithDataSets extends MultiLayerNetwork {
         super.doInitialise();
         unseenData.clearSSELog();
         if (validationData != null) validationData.clearSSELog();
-
+        windowSSE = 0.0;						// and start early stopping afresh
+        bestSSE = Double.MAX_VALUE;
+        bestEpoch = 0;
+        badWindows = 0;
     }
     /**
      * present the data to the set and return a String describing results
@@ -50,19 +68,49 @@ public class MLPwithDataSets extends MultiLayerNetwork {
     /**
      * learn training data, printing SSE at 10 of the epochs, evenly spaced
      * if a validation set available, learning stops when SSE on validation set rises
-     * this check is done by summing SSE over 10 epochs
+     * this check is done by summing SSE over 10 epochs: when the sum is the least so far, the
+     * weights are copied; when it has not fallen for patience sums, learning stops, and the
+     * copied weights are restored
+     * the sums continue over successive calls, until doInitialise is called
      * @param numEpochs		number of epochs
      * @param lRate			learning rate
      * @param momentum		momentum
+     * @param batchSize		number of items per batch: 1 for online learning, 0 for whole set
      * @return				String with data about learning eg SSEs at relevant epoch
      */
-    public String doLearn (int numEpochs, double lRate, double momentum) {
+    public String doLearn (int numEpochs, double lRate, double momentum, int batchSize) {
         String s = "";
-        if (validationData==null) s = super.doLearn(numEpochs, lRate, momentum);
+        if (validationData==null) s = super.doLearn(numEpochs, lRate, momentum, batchSize);
             // if no validation set, just use normal doLearn
         else {
-            s = super.doLearn(numEpochs, lRate, momentum);
-            // delete the above and write and comment code to use validation
+            int epochsSoFar = trainData.sizeSSELog();		// SSE log indicates how many epochs so far
+            if (bestWeights == null) bestWeights = new double[getNumWeights()];
+            boolean stop = false;
+            for (int ct=1; ct<=numEpochs; ct++) {
+                learnDataSet(trainData, lRate, momentum, batchSize);	// learn the training set
+                presentDataSet(validationData);				// then find SSE on validation set
+                validationData.addToSSELog();
+                for (int oct=0; oct<validationData.numOutputs(); oct++) windowSSE += validationData.lastSSE(oct);
+                stop = !carryOn(ct+epochsSoFar);			// tell listener, which may stop learning
+                if ((ct+epochsSoFar) % VALID_WINDOW == 0) {	// at end of window
+                    if (windowSSE < bestSSE) {				// if best so far, remember weights
+                        bestSSE = windowSSE;
+                        bestEpoch = ct+epochsSoFar;
+                        badWindows = 0;
+                        copyWeightsTo(bestWeights, 0);
+                    }
+                    else if (++badWindows >= patience) stop = true;	// else stop if no better for long
+                    windowSSE = 0.0;
+                }
+                if (numEpochs<20 || ct % (numEpochs/10) == 0 || stop) // print appropriate number of times
+                    s = s + addEpochString(ct+epochsSoFar) + " : " + trainData.dataAnalysis() +
+                            " Valid: " + validationData.dataAnalysis() + "\n";
+                if (stop) break;
+            }
+            if (stop && badWindows > 0) {					// if stopped with validation SSE risen since best
+                copyWeightsFrom(bestWeights, 0);			// go back to best weights
+                s = s + "Least validation SSE at epoch " + bestEpoch + " : weights restored to those then\n";
+            }
         }
 
         return s;											// return string showing learning
@@ -0,0 +1,177 @@
+import java.util.Arrays;
+
+/**
+ * @author shsmchlr
+ * Kernels used by layers of neurons to process a block of items at once, as dense matrix products
+ * Each item is a row in an array of doubles. Weighted sums are found from the weights as the layer
+ * holds them, several items at a time, so each weight is loaded once for them all; gradients
+ * are found with the loops blocked so the part of the gradients being used stays in cache.
+ * Each sum is formed in the same order as when items are processed one at a time,
+ * so results are identical either way.
+ * There is also a float version of multiplyRows, for layers computing in single precision.
+ */
+public final class MatrixKernel {
+
+    static final int BLOCK_ROWS = 64;		// maximum number of items in a block
+    static final int MIN_BLOCK_ROWS = 8;	// fewer items than this are best done one at a time
+    private static final int NEURON_TILE = 256;	// number of neurons in a tile of weights
+    private static final int INPUT_TILE = 64;	// and number of inputs
+
+    private MatrixKernel() {
+    }
+
+    /**
+     * calculate the weighted sums of rows items: for each item and neuron,
+     * outs = bias + inputs(0..n) * weights(1..n+1), from the weights as held by the layer,
+     * neuron by neuron, so they need not be transposed; items are taken 4 at a time, so each
+     * weight is loaded once for the 4, and their 4 sums are independent, so the processor works on
+     * them at once rather than waiting for each addition in turn.
+     * Each sum is formed in the same order as when one item is done at a time
+     * @param ins			array with the inputs of the items, one item after another
+     * @param inOffset		index in ins of the first input of the first item
+     * @param rows			number of items
+     * @param numIns		number of inputs per item
+     * @param weights		array with weights of layer, each neuron's bias then its numIns weights
+     * @param wtOffset		index in weights of the layer's first weight
+     * @param numNeurons	number of neurons
+     * @param outs			array into which weighted sums are written, one item after another
+     */
+    static void multiplyRows(double[] ins, int inOffset, int rows, int numIns,
+                             double[] weights, int wtOffset, int numNeurons, double[] outs) {
+        int row = 0;
+        for (; row+4 <= rows; row += 4) {								// for each group of 4 items
+            int in0 = inOffset + row*numIns, in1 = in0 + numIns, in2 = in1 + numIns, in3 = in2 + numIns;
+            int out0 = row*numNeurons;
+            int wtIndex = wtOffset;
+            for (int nct=0; nct<numNeurons; nct++) {
+                double bias = weights[wtIndex++];
+                double sum0 = bias, sum1 = bias, sum2 = bias, sum3 = bias;
+                for (int ict=0; ict<numIns; ict++) {					// input * weight for each item
+                    double wt = weights[wtIndex + ict];
+                    sum0 += ins[in0 + ict] * wt;
+                    sum1 += ins[in1 + ict] * wt;
+                    sum2 += ins[in2 + ict] * wt;
+                    sum3 += ins[in3 + ict] * wt;
+                }
+                wtIndex += numIns;
+                outs[out0 + nct] = sum0;
+                outs[out0 + numNeurons + nct] = sum1;
+                outs[out0 + 2*numNeurons + nct] = sum2;
+                outs[out0 + 3*numNeurons + nct] = sum3;
+            }
+        }
+        for (; row<rows; row++) {										// then any items left
+            int in0 = inOffset + row*numIns;
+            int wtIndex = wtOffset;
+            for (int nct=0; nct<numNeurons; nct++) {
+                double sum = weights[wtIndex++];
+                for (int ict=0; ict<numIns; ict++) sum += ins[in0 + ict] * weights[wtIndex + ict];
+                wtIndex += numIns;
+                outs[row*numNeurons + nct] = sum;
+            }
+        }
+    }
+
+    /**
+     * calculate the weighted sums of rows items as above, in single precision
+     * @param ins			array with the inputs of the items, one item after another
+     * @param inOffset		index in ins of the first input of the first item
+     * @param rows			number of items
+     * @param numIns		number of inputs per item
+     * @param weights		weights of layer as floats, each neuron's bias then its numIns weights
+     * @param numNeurons	number of neurons
+     * @param outs			array into which weighted sums are written, one item after another
+     */
+    static void multiplyRows(float[] ins, int inOffset, int rows, int numIns,
+                             float[] weights, int numNeurons, float[] outs) {
+        int row = 0;
+        for (; row+4 <= rows; row += 4) {								// for each group of 4 items
+            int in0 = inOffset + row*numIns, in1 = in0 + numIns, in2 = in1 + numIns, in3 = in2 + numIns;
+            int out0 = row*numNeurons;
+            int wtIndex = 0;
+            for (int nct=0; nct<numNeurons; nct++) {
+                float bias = weights[wtIndex++];
+                float sum0 = bias, sum1 = bias, sum2 = bias, sum3 = bias;
+                for (int ict=0; ict<numIns; ict++) {					// input * weight for each item
+                    float wt = weights[wtIndex + ict];
+                    sum0 += ins[in0 + ict] * wt;
+                    sum1 += ins[in1 + ict] * wt;
+                    sum2 += ins[in2 + ict] * wt;
+                    sum3 += ins[in3 + ict] * wt;
+                }
+                wtIndex += numIns;
+                outs[out0 + nct] = sum0;
+                outs[out0 + numNeurons + nct] = sum1;
+                outs[out0 + 2*numNeurons + nct] = sum2;
+                outs[out0 + 3*numNeurons + nct] = sum3;
+            }
+        }
+        for (; row<rows; row++) {										// then any items left
+            int in0 = inOffset + row*numIns;
+            int wtIndex = 0;
+            for (int nct=0; nct<numNeurons; nct++) {
+                float sum = weights[wtIndex++];
+                for (int ict=0; ict<numIns; ict++) sum += ins[in0 + ict] * weights[wtIndex + ict];
+                wtIndex += numIns;
+                outs[row*numNeurons + nct] = sum;
+            }
+        }
+    }
+
+    /**
+     * add, for rows items, input * delta to the gradient of each weight (1 * delta for bias)
+     * @param deltas		array with deltas of each neuron, one item after another
+     * @param rows			number of items
+     * @param numNeurons	number of neurons
+     * @param ins			array with the inputs of the items, one item after another
+     * @param inOffset		index in ins of the first input of the first item
+     * @param numIns		number of inputs per item
+     * @param gradients		gradients, neuron by neuron each with bias then numIns values
+     * @param gOffset		index in gradients of the layer's first gradient
+     */
+    static void addOuterProducts(double[] deltas, int rows, int numNeurons,
+                                 double[] ins, int inOffset, int numIns, double[] gradients, int gOffset) {
+        for (int nStart=0; nStart<numNeurons; nStart+=NEURON_TILE) {	// for each tile of neurons
+            int nEnd = Math.min(nStart + NEURON_TILE, numNeurons);
+            for (int iStart=0; iStart<numIns || iStart==0; iStart+=INPUT_TILE) {	// and of inputs
+                int iEnd = Math.min(iStart + INPUT_TILE, numIns);
+                for (int row=0; row<rows; row++) {						// for each item in turn
+                    int inIndex = inOffset + row*numIns;
+                    for (int nct=nStart; nct<nEnd; nct++) {
+                        double delta = deltas[row*numNeurons + nct];
+                        int gIndex = gOffset + nct*(numIns+1) + 1;				// index of neuron's first input weight
+                        if (iStart == 0) gradients[gIndex-1] += delta;	// bias weight
+                        for (int ict=iStart; ict<iEnd; ict++)
+                            gradients[gIndex + ict] += delta * ins[inIndex + ict];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * pass deltas back through the weights, for rows items: for each item and input,
+     * wtDeltas = sum over neurons of delta * weight from that input, using the weights as stored,
+     * so each neuron's weights are used in turn, in the same order as for one item at a time
+     * @param deltas		array with deltas of each neuron, one item after another
+     * @param rows			number of items
+     * @param numNeurons	number of neurons
+     * @param weights		array with weights of layer, neuron by neuron each with bias then numIns
+     * @param wtOffset		index in weights of the layer's first weight
+     * @param numIns		number of inputs
+     * @param wtDeltas		array into which weighted deltas are written, one item after another
+     */
+    static void backMultiply(double[] deltas, int rows, int numNeurons,
+                             double[] weights, int wtOffset, int numIns, double[] wtDeltas) {
+        Arrays.fill(wtDeltas, 0, rows*numIns, 0.0);
+        for (int row=0; row<rows; row++) {
+            int outIndex = row*numIns;
+            for (int nct=0; nct<numNeurons; nct++) {					// add delta * weight of each neuron
+                double delta = deltas[row*numNeurons + nct];
+                int wtIndex = wtOffset + nct*(numIns+1) + 1;			// index of neuron's first input weight
+                for (int ict=0; ict<numIns; ict++)
+                    wtDeltas[outIndex + ict] += delta * weights[wtIndex + ict];
+            }
+        }
+    }
+}
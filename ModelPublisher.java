@@ -0,0 +1,76 @@
+/**
+ * @author shsmchlr
+ * Lets other threads find outputs of a network while it learns, eg to answer requests while
+ * the network is learnt again from new data.
+ * The network's own arrays change as it learns, so they cannot be read by other threads; instead,
+ * every so many epochs, the learning thread makes a NetPredictor, an unchanging copy of the weights,
+ * and publishes it through a volatile reference. Other threads predict with the latest copy,
+ * without locking, and each uses its own arrays, so predicting creates no objects.
+ * The network is told to use this by setPublisher
+ */
+public class ModelPublisher {
+    private final LinearLayerNetwork net;		// network being learnt
+    private final DataSet data;					// data set it learns, whose scaling is used
+    private final int everyEpochs;				// publish when this many epochs since last
+    private volatile NetPredictor latest;		// latest copy of network
+    private volatile int latestEpoch;			// epoch at which it was made
+    private final ThreadLocal<double[][]> buffers;	// arrays of each thread which predicts
+
+    /**
+     * create publisher, publishing the network as it is now
+     * @param net			network, which may be the first layer of a chain
+     * @param data			data set it learns: if a ScaledDataSet, its scaling is used
+     * @param everyEpochs	publish when this many epochs learnt since the last time, eg 1
+     */
+    public ModelPublisher(LinearLayerNetwork net, DataSet data, int everyEpochs) {
+        this.net = net;
+        this.data = data;
+        this.everyEpochs = Math.max(1, everyEpochs);
+        latestEpoch = data.sizeSSELog();
+        latest = new NetPredictor(net, data);
+        buffers = ThreadLocal.withInitial(() -> latest.newBuffers());	// all copies are the same size
+    }
+
+    /**
+     * called, on the thread doing the learning, after each epoch: publishes a copy if due
+     * @param epoch	number of epochs learnt so far
+     */
+    void epochLearnt(int epoch) {
+        if (epoch - latestEpoch >= everyEpochs) publish(epoch);
+    }
+
+    /**
+     * publish a copy of the network as it is now; to be called only by the thread doing
+     * the learning, or when the network is not learning
+     * @param epoch	number of epochs learnt so far
+     */
+    public void publish(int epoch) {
+        NetPredictor copy = new NetPredictor(net, data);
+        latestEpoch = epoch;
+        latest = copy;
+    }
+
+    /**
+     * @return	latest copy of network, which does not change, so can be kept and used by any thread
+     */
+    public NetPredictor latest() {
+        return latest;
+    }
+
+    /**
+     * @return	number of epochs learnt when the latest copy was made
+     */
+    public int latestEpoch() {
+        return latestEpoch;
+    }
+
+    /**
+     * find the outputs of the latest copy of the network for the given inputs, creating no objects
+     * @param in	array with the inputs (raw values if the data set was scaled)
+     * @param out	array of at least numOutputs into which the outputs are written, not in itself
+     * @return		out
+     */
+    public double[] predict(double[] in, double[] out) {
+        return latest.predict(in, out, buffers.get());
+    }
+}
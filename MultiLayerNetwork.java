@@ -1,4 +1,3 @@
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -7,9 +6,14 @@ import java.util.Random;
  * This a multi layer network, comprising a hidden layer of neurons with sigmoid activation
  * Followed by another layer with linear/sigmoid activation, or be another multi layer network
  * A layer is defined as a set of neurons which have the same inputs
+ * The weights, changes in weights and gradients of all layers are kept in one array of each,
+ * this layer's first, so they can be changed, copied and summed in one loop;
+ * outputs and deltas are passed between layers in arrays which are reused for each item
  */
 public class MultiLayerNetwork extends SigmoidLayerNetwork {
     LinearLayerNetwork nextLayer;			// this is the next layer of neurons
+    private double[] hiddenErrors;			// errors of this layer, found from next layer's deltas
+    private double[] blockErrors;			// and for a block of items, one item after another
 
     /**
      * Constructor for neuron
@@ -21,14 +25,19 @@ public class MultiLayerNetwork extends SigmoidLayerNetwork {
     public MultiLayerNetwork(int numIns, int numOuts, DataSet data, LinearLayerNetwork nextL) {
         super(numIns, numOuts, data);			// construct the current layer
         nextLayer = nextL;						// store link to next layer
+        setChainHead(this);						// so changing any layer's settings remakes this one's workers
+        hiddenErrors = new double[numNeurons];
+        int total = getNumWeights();			// put weights of all layers in one set of arrays
+        useWeightArrays(new double[total], new double[total], new double[total], 0);
     }
     /**
      * calcOutputs of network
      * @param nInputs
-     *
+     * @param inOffset	index in nInputs of the first input
      */
-    protected void calcOutputs(ArrayList<Double> nInputs) {
-        // write this
+    protected void calcOutputs(double[] nInputs, int inOffset) {
+        super.calcOutputs(nInputs, inOffset);		// outputs of this layer
+        nextLayer.calcOutputs(outputs, 0);			// are inputs to next layer
     }
 
     /**
@@ -37,7 +46,7 @@ public class MultiLayerNetwork extends SigmoidLayerNetwork {
      * @param d
      */
     protected void outputsToDataSet (int ct, DataSet d) {
-        // write this
+        nextLayer.outputsToDataSet(ct, d);			// output layer is at end of chain
     }
 
     /**
@@ -45,18 +54,130 @@ public class MultiLayerNetwork extends SigmoidLayerNetwork {
      *
      *	@param errors
      */
-    protected void findDeltas(ArrayList<Double> errors) {
-        // write this
+    protected void findDeltas(double[] errors) {
+        nextLayer.findDeltas(errors);				// deltas of next layer from errors
+        nextLayer.weightedDeltas(hiddenErrors);		// pass them back as errors of this layer
+        super.findDeltas(hiddenErrors);				// so find deltas here
     }
 
     /**
-     * change all the weights in the network
+     * calcOutputs of network for a block of items
+     * @param nInputs
+     * @param inOffset	index in nInputs of the first input of the first item
+     * @param rows		number of items
+     */
+    protected void calcBlockOutputs(double[] nInputs, int inOffset, int rows) {
+        super.calcBlockOutputs(nInputs, inOffset, rows);		// outputs of this layer
+        nextLayer.calcBlockOutputs(blockOutputs, 0, rows);		// are inputs to next layer
+    }
+
+    /**
+     * send output layer results for a block of items to data set
+     * @param order	order of items, or null if in order
+     * @param ct	which item in the data set (or in the order) is first in block
+     * @param rows	number of items in block
+     * @param d		the data set
+     */
+    protected void blockOutputsToDataSet (int[] order, int ct, int rows, DataSet d) {
+        nextLayer.blockOutputsToDataSet(order, ct, rows, d);
+    }
+
+    /**
+     * find the deltas in the whole network for a block of items
+     * @param errors	array with the error of each output, one item after another
+     * @param rows		number of items in block
+     */
+    protected void findBlockDeltas(double[] errors, int rows) {
+        if (blockErrors == null) blockErrors = new double[MatrixKernel.BLOCK_ROWS * numNeurons];
+        nextLayer.findBlockDeltas(errors, rows);
+        nextLayer.blockWeightedDeltas(blockErrors, rows);
+        super.findBlockDeltas(blockErrors, rows);
+    }
+
+    /**
+     * add to the gradients of all the weights in the network for a block of items
+     * @param ins		array with the inputs, one item after another
+     * @param inOffset	index in ins of the first input of the first item
+     * @param rows		number of items in block
+     */
+    protected void addBlockToGradients(double[] ins, int inOffset, int rows) {
+        super.addBlockToGradients(ins, inOffset, rows);
+        nextLayer.addBlockToGradients(blockOutputs, 0, rows);
+    }
+
+    /**
+     * add to the gradients of all the weights in the network
      * @param ins
-     * @param learnRate
-     * @param momentum
+     * @param inOffset	index in ins of the first input
+     */
+    protected void addToGradients(double[] ins, int inOffset) {
+        super.addToGradients(ins, inOffset);			// add to gradients in this layer
+        nextLayer.addToGradients(outputs, 0);			// next layer's inputs are this layer's outputs
+    }
+
+    /**
+     * set whether all layers find the weighted sums of blocks of items in single precision
+     * @param on	true for single precision
+     */
+    public void setFloatCompute(boolean on) {
+        super.setFloatCompute(on);
+        nextLayer.setFloatCompute(on);
+    }
+
+    /**
+     * set the activation function of the hidden layers: this one and any later ones,
+     * but not the output layer
+     * @param act	the activation, eg Activation.RELU
+     */
+    public void setHiddenActivation(Activation act) {
+        setActivation(act);
+        if (nextLayer instanceof MultiLayerNetwork) ((MultiLayerNetwork) nextLayer).setHiddenActivation(act);
+    }
+
+    /**
+     * set whether this and any later sigmoid layers find the sigmoid from a table
+     * @param on	true to use the table
+     */
+    public void setFastSigmoid(boolean on) {
+        super.setFastSigmoid(on);
+        if (nextLayer instanceof SigmoidLayerNetwork) ((SigmoidLayerNetwork) nextLayer).setFastSigmoid(on);
+    }
+
+    /**
+     * return a copy of the network, for use by a worker, sharing the weights of all layers
+     * but with its own gradients, outputs and deltas
+     * @return	the copy
+     */
+    protected LinearLayerNetwork workerCopy() {
+        MultiLayerNetwork copy = (MultiLayerNetwork) super.workerCopy();	// copy this layer
+        copy.nextLayer = nextLayer.workerCopy();						// and the next
+        copy.nextLayer.useWeightArrays(weights, changeInWeights, copy.gradients, nextLayer.wtStart);
+        // next layer's gradients are in same array as those of copy
+        copy.hiddenErrors = new double[numNeurons];
+        copy.blockErrors = null;
+        copy.setChainHead(copy);
+        return copy;
+    }
+
+    /**
+     * note that this layer, and those after it, are in the chain whose first layer is head
+     * @param head	first layer
      */
-    protected void changeAllWeights(ArrayList<Double> ins, double learnRate, double momentum) {
-        // write this
+    protected void setChainHead(LinearLayerNetwork head) {
+        super.setChainHead(head);
+        nextLayer.setChainHead(head);
+    }
+
+    /**
+     * move weights etc of all layers into the given arrays, this layer's first
+     * @param wts		array for weights
+     * @param changes	array for changes in weights
+     * @param grads		array for gradients
+     * @param start		index in the arrays of first weight of the network
+     * @return			index after its last weight
+     */
+    protected int useWeightArrays(double[] wts, double[] changes, double[] grads, int start) {
+        return nextLayer.useWeightArrays(wts, changes, grads, super.useWeightArrays(wts, changes, grads, start));
     }
 
     /**
@@ -65,7 +186,7 @@ public class MultiLayerNetwork extends SigmoidLayerNetwork {
      */
     protected void setWeights (String[] wtsSplit) {
         super.setWeights(wtsSplit);					// copy relevant weights in this layer
-        nextLayer.setWeights(Arrays.copyOfRange(wtsSplit, weights.size(), wtsSplit.length));
+        nextLayer.setWeights(Arrays.copyOfRange(wtsSplit, numWeights, wtsSplit.length));
         // copy remaining strings in wtsSplit and pass to next layer
     }
     /**
@@ -81,14 +202,14 @@ public class MultiLayerNetwork extends SigmoidLayerNetwork {
      * @return
      */
     public int getNumWeights() {
-        return 0;    /// change this
+        return numWeights + nextLayer.getNumWeights();	// those in this layer and in the rest
     }
     /**
      * return the weights in the whole network as a string
      * @return the string
      */
     public String getWeights() {
-        return "";  		// write this
+        return super.getWeights() + nextLayer.getWeights();	// this layer's then the rest
     }
     /**
      * initialise network before running
@@ -135,7 +256,7 @@ public class MultiLayerNetwork extends SigmoidLayerNetwork {
      * function to test MLP on other non linear separable problem using three layers
      */
     public static void TestThree() {
-        DataSet Other = new DataSet(DataSet.GetFile("other.txt"));
+        DataSet Other = DataSet.LoadFile("other.txt");
         MultiLayerNetwork MLN = new MultiLayerNetwork(2, 4, Other,
                 new MultiLayerNetwork (4, 3, Other,
                         new SigmoidLayerNetwork(3, 2, Other)) );
@@ -148,11 +269,38 @@ public class MultiLayerNetwork extends SigmoidLayerNetwork {
         System.out.println("Weights " + MLN.getWeights());
 
     }
+    /**
+     * function to test that presenting a data set in parallel gives the same outputs as doing so
+     * serially, after the activation of a later layer is changed once workers exist
+     */
+    public static void TestWorkers() {
+        DataSet Other = new DataSet("2 2 %.1f %.0f %.3f;0.1 1.2 1 0;0.7 1.8 1 0;0.8 1.6 1 0;1 0.8 0 0;"+
+                "0.3 0.5 1 1;0 0.2 1 1;-0.3 0.8 1 1;-0.5 -1.5 0 1;-1.5 -1.3 0 1");
+        MultiLayerNetwork MLN = new MultiLayerNetwork(2, 4, Other,
+                new MultiLayerNetwork (4, 3, Other,
+                        new SigmoidLayerNetwork(3, 2, Other)) );
+        MLN.setWeights(new Random(3));
+        LinearLayerNetwork outLayer = ((MultiLayerNetwork) MLN.nextLayer).nextLayer;
+        boolean same = true;
+        for (int ct=0; ct<2; ct++) {
+            MLN.setNumWorkers(3);
+            MLN.presentDataSet(Other);					// so workers made with settings as they are
+            if (ct == 0) outLayer.setActivation(Activation.TANH);		// then change a later layer
+            else MLN.nextLayer.setActivation(Activation.RELU);
+            MLN.presentDataSet(Other);					// in parallel
+            double parallelSSE = Other.getTotalSSE();
+            MLN.setNumWorkers(1);
+            MLN.presentDataSet(Other);					// and serially
+            same = same && (parallelSSE == Other.getTotalSSE());
+        }
+        System.out.println("Parallel and serial outputs same after changing later layers : " + same);
+    }
     /**
      * @param args
      */
     public static void main(String[] args) {
         TestXOR();				// test MLP on the XOR problem
+        TestWorkers();			// test workers remade when later layers changed
         //	TestOther();			// test MLP on the other problem
         //	TestThree();			// test that have 3 hidden layers
     }
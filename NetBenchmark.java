@@ -0,0 +1,195 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author shsmchlr
+ * Benchmarks of the neurons, layers and data sets, so changes in speed can be measured
+ * Each benchmark is run a number of times to warm up the JIT compiler, and then timed
+ * over a number of measured runs, reporting the mean and standard deviation per run.
+ * Benchmarks are run for each combination of network size and data set size
+ * Results are added to sink, so the JIT compiler cannot remove the work being timed
+ */
+public class NetBenchmark {
+
+    static int warmUps = 5;				// number of runs before timing starts
+    static int measured = 10;			// number of timed runs
+    static volatile double sink;		// results are added here
+
+    /**
+     * interface for the code being timed
+     */
+    interface Bench {
+        double run() throws IOException;
+    }
+
+    /**
+     * time the benchmark and print the result
+     * @param name	name of benchmark
+     * @param b		benchmark
+     */
+    static void time(String name, Bench b) throws IOException {
+        for (int ct=0; ct<warmUps; ct++) sink += b.run();		// warm up
+        double[] times = new double[measured];
+        double mean = 0.0, var = 0.0;
+        for (int ct=0; ct<measured; ct++) {						// do timed runs
+            long start = System.nanoTime();
+            sink += b.run();
+            times[ct] = (System.nanoTime() - start) / 1e6;		// time in ms
+            mean += times[ct] / measured;
+        }
+        for (double t : times) var += (t - mean) * (t - mean) / measured;
+        System.out.println(String.format("%-40s %10.3f ms/op  +- %8.3f", name, mean, Math.sqrt(var)));
+    }
+
+    /**
+     * create string defining data set of random values, as read from a file
+     * @param numIns		number of inputs
+     * @param numOuts		number of outputs
+     * @param numItems		number of items
+     * @param withMinMax	if true, first two items are the min and max values, as used by ScaledDataSet
+     * @return string
+     */
+    static String randomData(int numIns, int numOuts, int numItems, boolean withMinMax) {
+        Random rgen = new Random(numItems);
+        StringBuilder sb = new StringBuilder();
+        sb.append(numIns).append(' ').append(numOuts).append(" %.2f %.2f %.3f;");
+        for (int ct=0; ct<numIns+numOuts; ct++) sb.append(ct<numIns ? "x" : "y").append(ct).append(' ');
+        if (withMinMax) {
+            sb.append(';');
+            for (int ct=0; ct<numIns+numOuts; ct++) sb.append(ct>0 ? " " : "").append(0);
+            sb.append(';');
+            for (int ct=0; ct<numIns+numOuts; ct++) sb.append(ct>0 ? " " : "").append(1);
+        }
+        for (int item=0; item<numItems; item++) {
+            sb.append(';');
+            for (int ct=0; ct<numIns+numOuts; ct++)
+                sb.append(ct>0 ? " " : "").append(String.format("%.4f", rgen.nextDouble()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * run the benchmarks for the given network and data set sizes
+     * @param numIns		number of inputs
+     * @param numHidden		number of hidden neurons
+     * @param numOuts		number of outputs
+     * @param numItems		number of items in data set
+     */
+    static void runAll(int numIns, int numHidden, int numOuts, int numItems) throws IOException {
+        String sizes = " " + numIns + "-" + numHidden + "-" + numOuts + " x" + numItems;
+        String allData = randomData(numIns, numOuts, numItems, false);
+        File file = File.createTempFile("bench", ".txt");				// file as read by GetFile
+        file.deleteOnExit();
+        try (FileWriter fw = new FileWriter(file)) {
+            fw.write(allData.replace(';', '\n'));
+        }
+        String scaledData = randomData(numIns, numOuts, numItems, true);
+        File binFile = File.createTempFile("bench", ".bin");			// and binary version
+        binFile.deleteOnExit();
+        DataSetFile.save(new DataSet(allData), binFile.getPath(), false);
+
+        DataSet data = new DataSet(allData);
+        SigmoidLayerNetwork layer = new SigmoidLayerNetwork(numIns, numOuts, data);
+        MultiLayerNetwork mlp = new MultiLayerNetwork(numIns, numHidden, data,
+                new SigmoidLayerNetwork(numHidden, numOuts, data));
+        Random rgen = new Random(1);
+        layer.setWeights(rgen);
+        mlp.setWeights(rgen);
+
+        time("calcOutputs" + sizes, () -> {
+            for (int ct=0; ct<data.numInSet(); ct++) layer.calcOutputs(data.getInsData(), data.insOffset(ct));
+            return layer.getOutputs()[0];
+        });
+        time("presentDataSet layer" + sizes, () -> { layer.presentDataSet(data); return data.getOut(0, 0); });
+        time("presentDataSet mlp" + sizes, () -> { mlp.presentDataSet(data); return data.getOut(0, 0); });
+        time("learnDataSet layer online" + sizes, () -> {
+            layer.learnDataSet(data, 0.1, 0.5, 1);
+            return data.getOut(0, 0);
+        });
+        time("learnDataSet layer batch 64" + sizes, () -> {
+            layer.learnDataSet(data, 0.1, 0.5, 64);
+            return data.getOut(0, 0);
+        });
+        time("learnDataSet mlp online" + sizes, () -> {
+            mlp.learnDataSet(data, 0.1, 0.5, 1);
+            return data.getOut(0, 0);
+        });
+        time("learnDataSet mlp batch 64" + sizes, () -> {
+            mlp.learnDataSet(data, 0.1, 0.5, 64);
+            return data.getOut(0, 0);
+        });
+        DataSet mappedData = DataSetFile.load(binFile.getPath());	// same values, read from mapped file
+        time("learnDataSet mlp batch 64 mapped" + sizes, () -> {
+            mlp.learnDataSet(mappedData, 0.1, 0.5, 64);
+            return mappedData.getOut(0, 0);
+        });
+        DataSet floatData = new DataSet(allData);					// same in single precision
+        floatData.storeInsAsFloats();
+        mlp.setFloatCompute(true);
+        time("presentDataSet mlp float" + sizes, () -> { mlp.presentDataSet(floatData); return floatData.getOut(0, 0); });
+        time("learnDataSet mlp batch 64 float" + sizes, () -> {
+            mlp.learnDataSet(floatData, 0.1, 0.5, 64);
+            return floatData.getOut(0, 0);
+        });
+        mlp.setFloatCompute(false);
+        mlp.setFastSigmoid(true);									// sigmoid from table
+        time("presentDataSet mlp fast sigmoid" + sizes, () -> { mlp.presentDataSet(data); return data.getOut(0, 0); });
+        time("learnDataSet mlp batch 64 fast sigmoid" + sizes, () -> {
+            mlp.learnDataSet(data, 0.1, 0.5, 64);
+            return data.getOut(0, 0);
+        });
+        mlp.setFastSigmoid(false);
+        mlp.setHiddenActivation(Activation.RELU);					// ReLU, so no exp in hidden layer
+        time("learnDataSet mlp batch 64 relu" + sizes, () -> {
+            mlp.learnDataSet(data, 0.1, 0.5, 64);
+            return data.getOut(0, 0);
+        });
+        mlp.setHiddenActivation(Activation.SIGMOID);
+        NetPredictor predictor = new NetPredictor(mlp, data);		// copy of mlp used for inference
+        double[] predIns = Arrays.copyOfRange(data.getInsData(), data.insOffset(0), data.insOffset(0) + numItems * numIns);
+        double[] predOuts = new double[numItems * numOuts];
+        double[] oneIn = new double[numIns], oneOut = new double[numOuts];
+        time("NetPredictor one at a time" + sizes, () -> {
+            for (int ct=0; ct<numItems; ct++) {
+                System.arraycopy(predIns, ct * numIns, oneIn, 0, numIns);
+                predictor.predict(oneIn, oneOut);
+            }
+            return oneOut[0];
+        });
+        time("NetPredictor block" + sizes, () -> predictor.predict(predIns, numItems, predOuts)[0]);
+        data.clearSSELog();
+        time("getSSE" + sizes, () -> data.getSSE().get(0));
+        time("dataAnalysis" + sizes, () -> data.dataAnalysis().length());
+        time("GetFile + DataSet" + sizes, () -> new DataSet(DataSet.GetFile(file.getPath())).numInSet());
+        time("LoadFile" + sizes, () -> DataSet.LoadFile(file.getPath()).numInSet());
+        time("DataSetFile.load" + sizes, () -> DataSetFile.load(binFile.getPath()).numInSet());
+        time("ScaledDataSet" + sizes, () -> new ScaledDataSet(scaledData).numInSet());
+    }
+
+    /**
+     * run benchmarks
+     * @param args	optionally: numIns numHidden numOuts numItems [warmUps measured]
+     * 				if not given, a set of small and larger sizes is used
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 4) {
+            if (args.length >= 6) {
+                warmUps = Integer.parseInt(args[4]);
+                measured = Integer.parseInt(args[5]);
+            }
+            runAll(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                    Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        }
+        else {
+            int[][] netSizes = {{2, 4, 1}, {4, 10, 3}, {64, 128, 10}};	// inputs hidden outputs
+            int[] setSizes = {1000, 20000};								// items in data set
+            for (int[] net : netSizes)
+                for (int items : setSizes)
+                    runAll(net[0], net[1], net[2], items);
+        }
+        System.out.println("(sink " + sink + ")");
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * @author shsmchlr
+ * Binary checkpoint of a network, so learning can carry on after a restart, or a learnt network
+ * be loaded for use, without parsing weights from text (which also loses their precision)
+ * File is all little endian:
+ * 		int magic "NNCP", int version, int numLayers, numWeights, numEpochs, numOuts, numOptState
+ * 		then for each layer in the chain, first to output layer, int numInputs, int numNeurons and
+ * 		its activation, then the name of the optimizer, each name as int length + UTF-8
+ * this is padded to a multiple of 8 bytes, then come, as doubles, the weights of all layers and the
+ * changes in weights (so momentum carries on), numOptState values of the state of the optimizer
+ * (eg the running means of Adam, so it carries on as it was), then the SSE log of the training set,
+ * numEpochs values for each of numOuts outputs, one output after another, so epochs are numbered on
+ * from where they were.
+ * (Version 1 had the SSE log epoch by epoch, so it could not be copied in bulk, and version 2 did not
+ * have the state of the optimizer; they are not read.)
+ * A checkpoint is written to a temporary file which then replaces the named one, so a crash while
+ * saving leaves the last checkpoint as it was
+ */
+public class NetCheckpoint {
+
+    static final int MAGIC = 0x5043_4E4E;		// "NNCP" when read as little endian bytes
+    static final int VERSION = 3;
+    private static final int HEADER_INTS = 7;	// ints at start of header, before the layers
+
+    private NetCheckpoint() {
+    }
+
+    /**
+     * save network net, and the SSE log of its training set, in file name
+     * @param net		network, which may be the first layer of a chain
+     * @param name		file name
+     * @throws IOException	if cannot write file
+     */
+    public static void save(LinearLayerNetwork net, String name) throws IOException {
+        write(encode(net, null), name);
+    }
+
+    /**
+     * put the checkpoint of the network into a buffer, ready to be written by write
+     * @param net		network
+     * @param buf		buffer to reuse if it is big enough, else (or if null) a new one is made,
+     * 					at least twice as big as buf, so a buffer reused as the log grows is seldom remade
+     * @return			buffer, whose contents are from position 0 to its limit
+     */
+    static ByteBuffer encode(LinearLayerNetwork net, ByteBuffer buf) {
+        ArrayList<LinearLayerNetwork> layers = layersOf(net);
+        byte[][] acts = new byte[layers.size()][];
+        for (int ct=0; ct<layers.size(); ct++) acts[ct] = utf8(layers.get(ct).activation.toString());
+        byte[] opt = utf8(net.optimizer.toString());
+        SSELog log = net.trainData.getSSELog();
+        int numWeights = net.getNumWeights();
+        int numOuts = log.numOutputs();
+        int numOptState = net.optimizer.stateSize(numWeights);
+
+        int headerSize = HEADER_INTS * 4 + 4 + opt.length;
+        for (byte[] a : acts) headerSize += 3 * 4 + a.length;
+        headerSize = (headerSize + 7) & ~7;						// pad to multiple of 8
+        long size = headerSize + 8L * (2L * numWeights + numOptState + (long) log.size() * numOuts);
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Network too big to checkpoint");
+        if (buf == null || buf.capacity() < size)				// grow by doubling, as the SSE log grows each epoch
+            buf = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE,
+                    (buf == null) ? size : Math.max(size, 2L * buf.capacity())));
+        buf.clear();
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        buf.putInt(MAGIC).putInt(VERSION).putInt(layers.size());
+        buf.putInt(numWeights).putInt(log.size()).putInt(numOuts).putInt(numOptState);
+        for (int ct=0; ct<layers.size(); ct++) {
+            LinearLayerNetwork layer = layers.get(ct);
+            buf.putInt(layer.numInputs).putInt(layer.numNeurons).putInt(acts[ct].length).put(acts[ct]);
+        }
+        buf.putInt(opt.length).put(opt);
+        buf.position(headerSize);
+        buf.asDoubleBuffer().put(net.weights, net.wtStart, numWeights);			// bulk copies
+        buf.position(headerSize + 8 * numWeights);
+        buf.asDoubleBuffer().put(net.changeInWeights, net.wtStart, numWeights);
+        buf.position(headerSize + 16 * numWeights);
+        DoubleBuffer db = buf.asDoubleBuffer();
+        net.optimizer.saveState(db, net.wtStart, net.wtStart + numWeights);
+        for (int ct=0; ct<numOuts; ct++) log.copyTo(ct, db);
+        buf.position(0).limit((int) size);
+        return buf;
+    }
+
+    /**
+     * write a checkpoint made by encode to file name, via a temporary file
+     * @param buf		buffer with checkpoint
+     * @param name		file name
+     * @throws IOException	if cannot write file
+     */
+    static void write(ByteBuffer buf, String name) throws IOException {
+        Path file = Paths.get(name);
+        Path temp = Paths.get(name + ".tmp");
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer b = buf.duplicate();
+            while (b.hasRemaining()) ch.write(b);
+            ch.force(true);										// so on disk before it replaces file
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * restore network net from the checkpoint in file name, so learning carries on from where it was:
+     * its weights, changes in weights, activations, optimizer and its state, and the SSE log of its
+     * training set are set
+     * @param net		network, whose layers must have the same numbers of inputs and neurons as those saved
+     * @param name		file name
+     * @throws IOException	if cannot read file, or it is not a checkpoint of such a network
+     */
+    public static void restore(LinearLayerNetwork net, String name) throws IOException {
+        restore(net, name, true);
+    }
+
+    /**
+     * restore network net from the checkpoint in file name
+     * @param net		network, whose layers must have the same numbers of inputs and neurons as those saved
+     * @param name		file name
+     * @param withLog	true to set the SSE log of its training set too, false to leave it as it is
+     * @throws IOException	if cannot read file, or it is not a checkpoint of such a network
+     */
+    private static void restore(LinearLayerNetwork net, String name, boolean withLog) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException(name + " is too big for a checkpoint");
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+                throw new IOException(name + " is not a checkpoint file of version " + VERSION);
+            ArrayList<LinearLayerNetwork> layers = layersOf(net);
+            int numLayers = buf.getInt();
+            int numWeights = buf.getInt();
+            int numEpochs = buf.getInt();
+            int numOuts = buf.getInt();
+            int numOptState = buf.getInt();
+            if (numLayers != layers.size() || numWeights != net.getNumWeights())
+                throw new IOException(name + " is for a network of " + numLayers + " layers and " + numWeights + " weights");
+            int netOuts = layers.get(layers.size()-1).numNeurons;
+            if (numEpochs < 0 || (numOuts != netOuts && !(numOuts == 0 && numEpochs == 0)))	// 0 if none logged
+                throw new IOException(name + " has an SSE log of " + numOuts + " outputs, not " + netOuts);
+            Activation[] acts = new Activation[numLayers];
+            for (int ct=0; ct<numLayers; ct++) {
+                LinearLayerNetwork layer = layers.get(ct);
+                int ins = buf.getInt(), neurons = buf.getInt();
+                if (ins != layer.numInputs || neurons != layer.numNeurons)
+                    throw new IOException(name + " has layer " + (ct+1) + " of " + ins + " inputs and " + neurons + " neurons");
+                acts[ct] = Activation.named(readString(buf));
+            }
+            Optimizer opt = Optimizer.named(readString(buf));
+            int pos = (buf.position() + 7) & ~7;				// data after padding
+            if (numOptState != opt.stateSize(numWeights)
+                    || ch.size() != pos + 8L * (2L * numWeights + numOptState + (long) numEpochs * numOuts))
+                throw new IOException(name + " is not a complete checkpoint: it has " + ch.size() + " bytes");
+
+            boolean changed = false;
+            for (int ct=0; ct<numLayers; ct++)
+                if (layers.get(ct).activation != acts[ct]) {
+                    layers.get(ct).activation = acts[ct];
+                    changed = true;
+                }
+            if (changed) net.setNumWorkers(net.getNumWorkers());	// so workers remade with these
+            if (!opt.toString().equals(net.optimizer.toString())) net.setOptimizer(opt);
+            net.optimizer.reset();
+            buf.position(pos);
+            buf.asDoubleBuffer().get(net.weights, net.wtStart, numWeights);	// bulk copies
+            buf.position(pos + 8 * numWeights);
+            buf.asDoubleBuffer().get(net.changeInWeights, net.wtStart, numWeights);
+            Arrays.fill(net.gradients, net.wtStart, net.wtStart + numWeights, 0.0);
+            buf.position(pos + 16 * numWeights);
+            DoubleBuffer db = buf.asDoubleBuffer();
+            net.optimizer.restoreState(db, net.wtStart, net.wtStart + numWeights, net.weights.length);
+            if (withLog) net.trainData.getSSELog().readFrom(db, numOuts, numEpochs);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {	// header cut short, or nonsense
+            throw new IOException(name + " is not a complete checkpoint", e);
+        }
+    }
+
+    /**
+     * load a network from the checkpoint in file name, making the chain of layers saved,
+     * each with the activation it had; the SSE log of data is left as it is
+     * @param name		file name
+     * @param data		data set used to train the network, which must have the inputs and outputs it had
+     * @return			the network, the first layer of the chain
+     * @throws IOException	if cannot read file, or it is not a checkpoint
+     */
+    public static LinearLayerNetwork load(String name, DataSet data) throws IOException {
+        int[] sizes;
+        try (FileChannel ch = FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(ch.size(), 1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining())
+                if (ch.read(header) < 0) break;
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException(name + " is not a checkpoint file of version " + VERSION);
+            int numLayers = header.getInt();
+            if (numLayers < 1 || numLayers > header.remaining() / 12)
+                throw new IOException(name + " is not a complete checkpoint");
+            header.position(HEADER_INTS * 4);					// skip to the layers
+            sizes = new int[numLayers + 1];						// inputs of each layer, then outputs of last
+            String[] acts = new String[numLayers];
+            for (int ct=0; ct<numLayers; ct++) {
+                sizes[ct] = header.getInt();
+                sizes[ct+1] = header.getInt();
+                acts[ct] = readString(header);
+            }
+            if (sizes[0] != data.numInputs() || sizes[numLayers] != data.numOutputs())
+                throw new IOException(name + " is for a network of " + sizes[0] + " inputs and "
+                        + sizes[numLayers] + " outputs");
+            LinearLayerNetwork net = acts[numLayers-1].endsWith("sigmoid")	// make output layer
+                    ? new SigmoidLayerNetwork(sizes[numLayers-1], sizes[numLayers], data)
+                    : new LinearLayerNetwork(sizes[numLayers-1], sizes[numLayers], data);
+            for (int ct=numLayers-2; ct>=0; ct--)				// then hidden layers, last to first
+                net = new MultiLayerNetwork(sizes[ct], sizes[ct+1], data, net);
+            restore(net, name, false);							// which sets activations and weights
+            return net;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(name + " is not a complete checkpoint", e);
+        }
+    }
+
+    /**
+     * return list of the layers in the chain of which net is the first
+     * @param net
+     * @return	list
+     */
+    static ArrayList<LinearLayerNetwork> layersOf(LinearLayerNetwork net) {
+        ArrayList<LinearLayerNetwork> ans = new ArrayList<LinearLayerNetwork>();
+        for (LinearLayerNetwork layer = net; layer != null;
+             layer = (layer instanceof MultiLayerNetwork) ? ((MultiLayerNetwork) layer).nextLayer : null)
+            ans.add(layer);
+        return ans;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer b) {
+        int len = b.getInt();
+        if (len < 0 || len > b.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[len];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
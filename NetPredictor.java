@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author shsmchlr
+ * Finds the outputs of a learnt network for one set of inputs at a time, without a data set,
+ * so the network can be used, eg by a service, to answer requests as they come
+ * The predictor has its own copy of the weights and activations of each layer in the chain,
+ * so later learning by the network does not change it, and it can be used by many threads at once:
+ * each thread has its own arrays for the outputs of the layers, made when it first predicts,
+ * so after that predict creates no objects.
+ * If the network learnt a ScaledDataSet, inputs are normalised and outputs denormalised as
+ * that set does, so raw values are passed and returned
+ * The outputs of many sets of inputs can also be found at once, using MatrixKernel.multiplyRows,
+ * which gives the same results as finding them one at a time, but faster
+ */
+public class NetPredictor {
+    private final double[] weights;				// weights of all layers, one layer after another
+    private final int[] wtStarts;				// index in weights of first weight of each layer
+    private final int[] numIns, numNeurons;		// inputs and neurons of each layer
+    private final Activation[] acts;			// activation of each layer
+    private final ScaledDataSet scaling;		// set whose scaling is used, or null if not scaled
+    private final int width;					// most inputs or outputs of any layer
+    private final ThreadLocal<double[][]> buffers;	// two arrays, for inputs and outputs of each layer
+    private final ThreadLocal<double[][]> blockBuffers;	// and for a block of sets of inputs
+
+    /**
+     * create predictor from the network as it is now
+     * @param net		network, which may be the first layer of a chain
+     * @param data		data set the network learnt: if a ScaledDataSet, its scaling is used
+     */
+    public NetPredictor(LinearLayerNetwork net, DataSet data) {
+        ArrayList<LinearLayerNetwork> layers = NetCheckpoint.layersOf(net);
+        int num = layers.size();
+        weights = new double[net.getNumWeights()];
+        net.copyWeightsTo(weights, 0);
+        wtStarts = new int[num];
+        numIns = new int[num];
+        numNeurons = new int[num];
+        acts = new Activation[num];
+        int most = 0;
+        for (int ct=0; ct<num; ct++) {
+            LinearLayerNetwork layer = layers.get(ct);
+            wtStarts[ct] = layer.wtStart - net.wtStart;
+            numIns[ct] = layer.numInputs;
+            numNeurons[ct] = layer.numNeurons;
+            acts[ct] = layer.activation;
+            most = Math.max(most, Math.max(numIns[ct], numNeurons[ct]));
+        }
+        if (data.numInputs() != numIns[0] || data.numOutputs() != numNeurons[num-1])
+            throw new IllegalArgumentException("Data set does not have the inputs and outputs of the network");
+        scaling = (data instanceof ScaledDataSet) ? (ScaledDataSet) data : null;
+        width = most;
+        buffers = ThreadLocal.withInitial(this::newBuffers);
+        blockBuffers = ThreadLocal.withInitial(this::newBlockBuffers);
+    }
+
+    /**
+     * return the two arrays used by predict for the inputs and outputs of each layer
+     * @return	arrays
+     */
+    double[][] newBuffers() {
+        return new double[][] {new double[width], new double[width]};
+    }
+
+    /**
+     * return the two arrays used by predict for the inputs and outputs of each layer for a block of items
+     * @return	arrays
+     */
+    double[][] newBlockBuffers() {
+        return new double[][] {new double[MatrixKernel.BLOCK_ROWS * width], new double[MatrixKernel.BLOCK_ROWS * width]};
+    }
+
+    /**
+     * @return	number of inputs of the network
+     */
+    public int numInputs() {
+        return numIns[0];
+    }
+
+    /**
+     * @return	number of outputs of the network
+     */
+    public int numOutputs() {
+        return numNeurons[numNeurons.length-1];
+    }
+
+    /**
+     * find the outputs of the network for the given inputs, creating no objects
+     * @param in	array with the inputs (raw values if the data set was scaled)
+     * @param out	array of at least numOutputs into which the outputs are written, not in itself
+     * @return		out
+     */
+    public double[] predict(double[] in, double[] out) {
+        return predict(in, out, buffers.get());
+    }
+
+    /**
+     * find the outputs of the network for the given inputs, using the given arrays
+     * @param in	array with the inputs
+     * @param out	array into which the outputs are written
+     * @param buf	two arrays as made by newBuffers, used only by this thread
+     * @return		out
+     */
+    double[] predict(double[] in, double[] out, double[][] buf) {
+        if (in.length < numInputs() || out.length < numOutputs())
+            throw new IllegalArgumentException("Need " + numInputs() + " inputs and space for " + numOutputs() + " outputs");
+        if (buf[0].length < width) throw new IllegalArgumentException("Buffers too small for network");
+        double[] src = in;
+        if (scaling != null) {
+            scaling.normaliseIns(in, buf[0]);
+            src = buf[0];
+        }
+        int last = acts.length - 1;
+        for (int lct=0; lct<=last; lct++) {				// for each layer, output of one is input to next
+            double[] dst = (lct == last) ? out : (src == buf[0]) ? buf[1] : buf[0];
+            int wtIndex = wtStarts[lct];
+            for (int nct=0; nct<numNeurons[lct]; nct++) {
+                double sum = weights[wtIndex++];			// bias weight, then weight * each input
+                for (int ict=0; ict<numIns[lct]; ict++) sum += src[ict] * weights[wtIndex++];
+                dst[nct] = sum;
+            }
+            acts[lct].outputs(dst, 0, numNeurons[lct]);
+            src = dst;
+        }
+        if (scaling != null) scaling.denormaliseOuts(out, out);
+        return out;
+    }
+
+    /**
+     * find the outputs of the network for rows sets of inputs at once, creating no objects
+     * once this thread has called it
+     * @param ins	array with the inputs, one set after another (raw values if the data set was scaled)
+     * @param rows	number of sets of inputs
+     * @param outs	array into which the outputs are written, one set after another
+     * @return		outs
+     */
+    public double[] predict(double[] ins, int rows, double[] outs) {
+        return predict(ins, rows, outs, blockBuffers.get());
+    }
+
+    /**
+     * find the outputs of the network for rows sets of inputs, a block at a time, using the given arrays
+     * @param ins	array with the inputs, one set after another
+     * @param rows	number of sets of inputs
+     * @param outs	array into which the outputs are written, one set after another
+     * @param buf	two arrays as made by newBlockBuffers, used only by this thread
+     * @return		outs
+     */
+    double[] predict(double[] ins, int rows, double[] outs, double[][] buf) {
+        int numIn = numInputs(), numOut = numOutputs();
+        if (ins.length < rows * numIn || outs.length < rows * numOut)
+            throw new IllegalArgumentException("Need " + rows * numIn + " inputs and space for " + rows * numOut + " outputs");
+        int last = acts.length - 1;
+        for (int start=0; start<rows; start+=MatrixKernel.BLOCK_ROWS) {	// for each block
+            int n = Math.min(MatrixKernel.BLOCK_ROWS, rows - start);
+            double[] src = ins;
+            int srcOffset = start * numIn;
+            if (scaling != null) {
+                for (int row=0; row<n; row++) scaling.normaliseIns(ins, (start+row) * numIn, buf[0], row * numIn);
+                src = buf[0];
+                srcOffset = 0;
+            }
+            for (int lct=0; lct<=last; lct++) {			// for each layer, output of one is input to next
+                double[] dst = (src == buf[0]) ? buf[1] : buf[0];
+                MatrixKernel.multiplyRows(src, srcOffset, n, numIns[lct], weights, wtStarts[lct], numNeurons[lct], dst);
+                acts[lct].outputs(dst, 0, n * numNeurons[lct]);
+                src = dst;
+                srcOffset = 0;
+            }
+            System.arraycopy(src, 0, outs, start * numOut, n * numOut);
+            if (scaling != null)
+                for (int row=0; row<n; row++)
+                    scaling.denormaliseOuts(outs, (start+row) * numOut, outs, (start+row) * numOut);
+        }
+        return outs;
+    }
+
+    /**
+     * find the outputs of the network for the given inputs, in a new array
+     * @param in	array with the inputs
+     * @return		array with the outputs
+     */
+    public double[] predict(double[] in) {
+        return predict(in, new double[numOutputs()]);
+    }
+
+    /**
+     * predict the outputs of the items in a data set, from a checkpoint of a network which learnt it,
+     * printing the inputs, targets and predictions and the mean time per prediction
+     * @param args	checkpoint file, data set file (.bin for binary), and -unscaled if text file not scaled
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: NetPredictor checkpointFile dataFile [-unscaled]");
+            return;
+        }
+        boolean isScaled = !(args.length > 2 && args[2].equals("-unscaled"));
+        DataSet d = args[1].endsWith(".bin") ? DataSetFile.load(args[1])
+                : isScaled ? ScaledDataSet.LoadFile(args[1]) : DataSet.LoadFile(args[1]);
+        NetPredictor p = new NetPredictor(NetCheckpoint.load(args[0], d), d);
+        double[] in = new double[p.numInputs()];
+        double[] out = new double[p.numOutputs()];
+        for (int item=0; item<d.numInSet(); item++) {
+            List<Double> raw = d.getPrintIns(item);				// raw inputs
+            for (int ct=0; ct<in.length; ct++) in[ct] = raw.get(ct);
+            p.predict(in, out);
+            System.out.println(raw + " : " + d.getPrintTargets(item) + " -> " + Arrays.toString(out));
+        }
+        int reps = 100000;
+        long start = System.nanoTime();
+        for (int ct=0; ct<reps; ct++) p.predict(in, out);
+        System.out.println(String.format("%.3f", (System.nanoTime() - start) / 1000.0 / reps) + " us per prediction");
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * @author shsmchlr
+ * Runs the learning of an MLP from the command line, with no GUI, so jobs can be run on servers
+ * The network, data sets and learning parameters are given as arguments; the network is
+ * trained using MLPwithDataSets, then the SSE of each epoch and the final performance are
+ * written to a metrics file, and the weights to a weights file (as read by setWeights)
+ */
+public class NetRunner {
+
+    String trainName = "train.txt";			// names of data set files
+    String unseenName = "unseen.txt";
+    String validName = "";					// empty if no validation set
+    boolean isScaled = true;				// true if text files are for ScaledDataSets
+    int[] hidden = {10};					// number of neurons in each hidden layer
+    boolean linearOutput = false;			// true if output layer linear, else sigmoid
+    boolean useFloats = false;				// true if inputs held and sums found as floats
+    boolean fastSigmoid = false;			// true if sigmoid found from table
+    Activation hiddenAct = Activation.SIGMOID;	// activation function of hidden layers
+    String optimizerName = "momentum";		// how weights are changed, see Optimizer
+    double learnRate = 0.2;					// learning rate
+    double momentum = 0.5;					// momentum
+    int numEpochs = 1000;					// number of epochs to learn
+    int ranSeed = 100;						// seed of random number generator
+    int batchSize = 1;						// items per batch: 1 online, 0 whole set
+    boolean shuffle = false;				// true if items learnt in a new order each epoch
+    int patience = 2;						// windows with no fall in validation SSE before stopping
+    int numWorkers = Runtime.getRuntime().availableProcessors();	// threads used
+    String metricsName = "metrics.txt";		// file to which SSEs and results are written
+    String weightsName = "weights.txt";		// file to which weights are written
+    String checkpointName = "";				// binary checkpoint written after learning, if not empty
+    String resumeName = "";					// checkpoint from which learning carries on, if not empty
+    int checkEpochs = 0;					// checkpoint written every this many epochs, if > 0
+    double checkSecs = 0.0;					// and/or every this many seconds, if > 0
+
+    DataSet trainData, unseenData, validData;
+    MLPwithDataSets net;
+
+    /**
+     * set the options from the command line arguments, each -name value
+     * @param args	arguments
+     */
+    void setOptions(String[] args) {
+        for (int ct=0; ct<args.length; ct++) {
+            String opt = args[ct];
+            if (opt.equals("-unscaled")) {				// options with no value
+                isScaled = false;
+                continue;
+            }
+            if (opt.equals("-linear")) {
+                linearOutput = true;
+                continue;
+            }
+            if (opt.equals("-float")) {
+                useFloats = true;
+                continue;
+            }
+            if (opt.equals("-fast")) {
+                fastSigmoid = true;
+                continue;
+            }
+            if (opt.equals("-shuffle")) {
+                shuffle = true;
+                continue;
+            }
+            if (ct+1 >= args.length) throw new IllegalArgumentException("No value for " + opt);
+            String val = args[++ct];
+            switch (opt) {
+                case "-train" : trainName = val; break;
+                case "-unseen" : unseenName = val; break;
+                case "-valid" : validName = val; break;
+                case "-hidden" : hidden = parseHidden(val); break;
+                case "-act" : hiddenAct = Activation.named(val); break;
+                case "-opt" : optimizerName = val; break;
+                case "-lr" : learnRate = Double.parseDouble(val); break;
+                case "-mom" : momentum = Double.parseDouble(val); break;
+                case "-epochs" : numEpochs = Integer.parseInt(val); break;
+                case "-seed" : ranSeed = Integer.parseInt(val); break;
+                case "-batch" : batchSize = Integer.parseInt(val); break;
+                case "-patience" : patience = Integer.parseInt(val); break;
+                case "-workers" : numWorkers = Integer.parseInt(val); break;
+                case "-metrics" : metricsName = val; break;
+                case "-weights" : weightsName = val; break;
+                case "-checkpoint" : checkpointName = val; break;
+                case "-resume" : resumeName = val; break;
+                case "-ckepochs" : checkEpochs = Integer.parseInt(val); break;
+                case "-cksecs" : checkSecs = Double.parseDouble(val); break;
+                default : throw new IllegalArgumentException("Unknown option " + opt);
+            }
+        }
+    }
+
+    /**
+     * convert topology string, eg 10 or 10,5, into number of neurons in each hidden layer
+     * @param s		string
+     * @return		array of sizes
+     */
+    static int[] parseHidden(String s) {
+        String[] parts = s.split(",");
+        int[] ans = new int[parts.length];
+        for (int ct=0; ct<parts.length; ct++) {
+            ans[ct] = Integer.parseInt(parts[ct].trim());
+            if (ans[ct] < 1) throw new IllegalArgumentException("Hidden layer needs neurons : " + s);
+        }
+        return ans;
+    }
+
+    /**
+     * load data set from named file: binary file if name ends .bin, else text file
+     * if using floats, the inputs are held as floats
+     * @param name		file name
+     * @return			data set
+     * @throws IOException	if cannot read file
+     */
+    DataSet loadData(String name) throws IOException {
+        if (name.endsWith(".bin")) return DataSetFile.load(name, useFloats);
+        DataSet d = isScaled ? ScaledDataSet.LoadFile(name) : DataSet.LoadFile(name);
+        if (useFloats) d.storeInsAsFloats();
+        return d;
+    }
+
+    /**
+     * load the data sets and create the network: hidden layers in turn, then output layer
+     * @throws IOException	if cannot read a data set file
+     */
+    void setupNet() throws IOException {
+        trainData = loadData(trainName);
+        unseenData = loadData(unseenName);
+        validData = validName.isEmpty() ? null : loadData(validName);
+
+        int last = hidden.length - 1;
+        LinearLayerNetwork layer = linearOutput
+                ? new LinearLayerNetwork(hidden[last], trainData.numOutputs(), trainData)
+                : new SigmoidLayerNetwork(hidden[last], trainData.numOutputs(), trainData);
+        for (int ct=last; ct>0; ct--)					// add hidden layers, last to second
+            layer = new MultiLayerNetwork(hidden[ct-1], hidden[ct], trainData, layer);
+        net = new MLPwithDataSets(trainData.numInputs(), hidden[0], trainData, layer, unseenData, validData);
+
+        net.setNumWorkers(numWorkers);
+        net.setFloatCompute(useFloats);
+        net.setHiddenActivation(hiddenAct);
+        net.setOptimizer(Optimizer.named(optimizerName));
+        net.setFastSigmoid(fastSigmoid);
+        net.setPatience(patience);
+        if (shuffle) net.setShuffle(new Random(ranSeed));	// seeded, so same orders each run
+        net.doInitialise();
+        net.setWeights(new Random(ranSeed));
+        if (!resumeName.isEmpty()) {					// carry on from checkpoint
+            NetCheckpoint.restore(net, resumeName);
+            hiddenAct = net.getActivation();
+        }
+    }
+
+    /**
+     * describe the network and learning parameters
+     * @return	string
+     */
+    String describe() {
+        String s = "MLP " + trainData.numInputs();
+        for (int h : hidden) s = s + "-" + h;
+        return s + "-" + trainData.numOutputs() + " hidden " + hiddenAct +
+                (linearOutput ? " output linear" : " output sigmoid") +
+                (useFloats ? " float" : "") + (fastSigmoid ? " fast sigmoid" : "") +
+                " " + net.getOptimizer() + " Learn Rate " + String.format("%.3f", learnRate) +
+                " Momentum " + String.format("%.3f", momentum) + " Seed " + ranSeed +
+                " Batch " + batchSize + (shuffle ? " shuffled" : "") + " Epochs " + numEpochs;
+    }
+
+    /**
+     * learn, then write the metrics and weights files
+     * @throws IOException	if cannot write files
+     */
+    void run() throws IOException {
+        Checkpointer cp = null;
+        if (!checkpointName.isEmpty() && (checkEpochs > 0 || checkSecs > 0.0)) {	// save while learning
+            cp = new Checkpointer(net, checkpointName, checkEpochs, checkSecs);
+            net.setCheckpointer(cp);
+        }
+        long start = System.currentTimeMillis();
+        String learnt;
+        try {
+            learnt = net.doLearn(numEpochs, learnRate, momentum, batchSize);
+        } finally {
+            if (cp != null) {
+                net.setCheckpointer(null);
+                cp.close();										// wait for last writes
+            }
+        }
+        double secs = (System.currentTimeMillis() - start) / 1000.0;
+        String result = net.doPresent();
+
+        try (PrintWriter pw = new PrintWriter(metricsName)) {
+            pw.println("# " + describe());
+            pw.print("Epoch");									// column headings
+            for (int ct=0; ct<trainData.numOutputs(); ct++) pw.print(" Train_" + trainData.getOutName(ct));
+            if (validData != null)
+                for (int ct=0; ct<validData.numOutputs(); ct++) pw.print(" Valid_" + validData.getOutName(ct));
+            pw.println();
+            SSELog trainLog = trainData.getSSELog();			// SSEs of each epoch
+            SSELog validLog = (validData == null) ? null : validData.getSSELog();
+            // validation SSEs are only logged for epochs of this run, so if resumed they start later
+            int validFrom = (validLog == null) ? 0 : trainLog.size() - validLog.size();
+            for (int ep=0; ep<trainLog.size(); ep++) {
+                pw.print(ep+1);
+                for (int ct=0; ct<trainData.numOutputs(); ct++) pw.print(" " + trainLog.get(ct, ep));
+                if (validLog != null)
+                    for (int ct=0; ct<validData.numOutputs(); ct++)
+                        pw.print(ep >= validFrom ? " " + validLog.get(ct, ep - validFrom) : " -");
+                pw.println();
+            }
+            if (trainLog.size() > 0) {
+                pw.print("# Train SSE min / mean");
+                for (int ct=0; ct<trainData.numOutputs(); ct++)
+                    pw.print(" " + trainLog.min(ct) + " / " + trainLog.mean(ct));
+                pw.println();
+            }
+            pw.println("# Learnt in " + String.format("%.3f", secs) + " s");
+            if (cp != null) pw.println("# " + cp);
+            for (String line : learnt.split("\n")) pw.println("# " + line);
+            pw.println("# " + result);
+        }
+        try (PrintWriter pw = new PrintWriter(weightsName)) {
+            pw.println(net.getWeights());
+        }
+        if (!checkpointName.isEmpty()) NetCheckpoint.save(net, checkpointName);
+        System.out.println(describe());
+        System.out.print(learnt);
+        System.out.println(result);
+        System.out.println("Metrics in " + metricsName + ", weights in " + weightsName +
+                (checkpointName.isEmpty() ? "" : ", checkpoint in " + checkpointName));
+    }
+
+    /**
+     * @param args	options, each -name value : -train -unseen -valid (data files, .bin for binary)
+     * 				-hidden (eg 10 or 10,5) -act (activation of hidden layers, eg relu)
+     * 				-opt (momentum, nesterov, rmsprop or adam) -lr -mom -epochs -seed -batch -patience -workers -metrics -weights
+     * 				-checkpoint (binary file of network written after learning) -resume (checkpoint to carry on from)
+     * 				-ckepochs -cksecs (also write checkpoint every so many epochs or seconds while learning)
+     * 				and -unscaled (text files are not scaled) -linear (linear output layer)
+     * 				-float (inputs held and weighted sums found in single precision)
+     * 				-fast (sigmoid found from table) -shuffle (items learnt in a new order each epoch)
+     */
+    public static void main(String[] args) {
+        NetRunner runner = new NetRunner();
+        try {
+            runner.setOptions(args);
+            runner.setupNet();
+            runner.run();
+        } catch (IllegalArgumentException | IOException | UncheckedIOException e) {
+            System.err.println("NetRunner : " + e.getMessage());
+            System.err.println("Usage: NetRunner [-train f] [-unseen f] [-valid f] [-hidden n,n..] [-act a] [-opt o] [-lr x] [-mom x]"
+                    + " [-epochs n] [-seed n] [-batch n] [-patience n] [-workers n] [-metrics f] [-weights f] [-checkpoint f] [-resume f] [-ckepochs n] [-cksecs x] [-unscaled] [-linear] [-float] [-fast] [-shuffle]");
+            System.exit(1);
+        }
+    }
+}
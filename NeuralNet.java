@@ -1,15 +1,21 @@
+import java.util.ArrayList;
 import java.util.Optional;
 import java.util.Random;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
@@ -37,8 +43,11 @@ public class NeuralNet extends Application {
 
     int numEpochs = 7;									// number of epochs used for training
 
+    int numWorkers = Runtime.getRuntime().availableProcessors();	// threads used to present data sets
+
     int ranSeed = 100;									// seed of random number generator
     Random rgen = new Random();							// random number generator
+    boolean shuffle = false;							// if true, items learnt in new order each epoch
 
     Text netText;										// text : used to display results
 
@@ -50,6 +59,12 @@ public class NeuralNet extends Application {
     int graphY = 200;									// height of one (of three) plots
 
     MenuItem mHidden;			// menuitem for hidden neurons ... here so can hide it
+    MenuBar menuBar;			// main menu ... here so can disable it while learning
+    HBox buttonBox;				// box of buttons ... here so can disable them while learning
+    Button btnPause, btnStop;	// buttons to pause and stop learning
+
+    volatile boolean learnPaused = false;		// set when learning in background is to pause
+    volatile boolean learnStopped = false;		// and when it is to stop
 
     /**
      * Function to show a message,
@@ -144,7 +159,7 @@ public class NeuralNet extends Application {
      * @param whichY		// which of up to 3 graphs to be plotted
      */
     private void drawSSE(String title, DataSet data, int whichOut, int whichY) {
-        netPlot.yPlot(title, data.getSSELog(whichOut), whichY*(graphY-10));
+        netPlot.yPlot(title, data.getSSELog(whichOut, graphX), data.sizeSSELog(), whichY*(graphY-10));
     }
     /**
      * Display name of network and current value of learning parameters
@@ -162,6 +177,8 @@ public class NeuralNet extends Application {
      */
     private void netInitialise() {
         rgen.setSeed(ranSeed);						// set the seed for random numbers
+        net.setNumWorkers(numWorkers);				// share presenting data between threads
+        net.setShuffle(shuffle ? new Random(ranSeed) : null);	// shuffle, same orders each run
         net.doInitialise();							// initialise net
         // set weights from weightString or random
         if (weightsString.length()==0 || ranSeed>0) net.setWeights(rgen);
@@ -191,7 +208,7 @@ public class NeuralNet extends Application {
         if (isAndOrXor)
             trainData = new DataSet("2 3 %.0f %.0f %.3f;x1 x2 AND OR XOR;0 0 0 0 0;0 1 0 1 1;1 0 0 1 1;1 1 1 1 0");
             // define data set with inputs x1,x2 and outputs AND OR XOR
-        else trainData = new DataSet(DataSet.GetFile("other.txt"));
+        else trainData = DataSet.LoadFile("other.txt");
 
         unseenData = null;	// no unseen set
         validData = null;	// no validation set
@@ -258,8 +275,8 @@ public class NeuralNet extends Application {
      */
     private void setupMLPIris () {
         // first define training and unseen data - from files; no validation
-        trainData = new ScaledDataSet(DataSet.GetFile("iristrain.txt"));
-        unseenData = new ScaledDataSet(DataSet.GetFile("irisunseen.txt"));
+        trainData = ScaledDataSet.LoadFile("iristrain.txt");
+        unseenData = ScaledDataSet.LoadFile("irisunseen.txt");
         validData = null;
 
         weightsString = "";			// random weights only
@@ -275,9 +292,9 @@ public class NeuralNet extends Application {
     private void setupMLPThree (boolean isUser) {
         // set up data sets
         String preStr =  (isUser)? "user" : "";
-        trainData = new ScaledDataSet(DataSet.GetFile(preStr+"train.txt"));
-        unseenData = new ScaledDataSet(DataSet.GetFile(preStr+"unseen.txt"));
-        validData = new ScaledDataSet(DataSet.GetFile(preStr+"valid.txt"));
+        trainData = ScaledDataSet.LoadFile(preStr+"train.txt");
+        unseenData = ScaledDataSet.LoadFile(preStr+"unseen.txt");
+        validData = ScaledDataSet.LoadFile(preStr+"valid.txt");
 
         weightsString = "";
         setHidden();		// create MLP
@@ -286,12 +303,117 @@ public class NeuralNet extends Application {
         setupNet(false);			// set up - enable option to change number of hidden neurons
     }
 
+    /**
+     * enable or disable the menu and buttons when learning starts or ends, so while learning
+     * only the pause and stop buttons can be used
+     * @param learning	true if learning has started
+     */
+    private void setLearning(boolean learning) {
+        menuBar.setDisable(learning);
+        for (Node n : buttonBox.getChildren())
+            if (n instanceof Button) n.setDisable(learning != (n == btnPause || n == btnStop));
+        btnPause.setText("Pause");
+    }
+
+    /**
+     * show progress of learning : add the SSEs learnt since last called to those plotted,
+     * then show the latest epoch and SSE and plot the SSEs
+     * @param textBefore	text shown before learning started
+     * @param newSSEs		SSEs of epochs learnt but not yet shown
+     * @param plotSSEs		SSEs plotted so far
+     * @param epoch			latest epoch
+     */
+    private void showProgress(String textBefore, ArrayList<Double> newSSEs, SSELog plotSSEs, int epoch) {
+        synchronized (newSSEs) {						// take the new SSEs
+            for (double sse : newSSEs) plotSSEs.add(sse);
+            newSSEs.clear();
+        }
+        if (plotSSEs.size() == 0) return;
+        netText.setText(textBefore + "\nLearning ... Epoch " + Integer.toString(epoch) +
+                " : SSE " + String.format("%.4f", plotSSEs.last(0)));
+        netPlot.yPlot("Train", plotSSEs.downsampled(0, graphX), plotSSEs.size(), 0);
+    }
+
+    /**
+     * learn for numEpochs on a background thread, so the GUI still responds and learning can be
+     * paused or stopped; after each epoch the SSE is noted, and progress is shown on the
+     * GUI thread at most 10 times a second
+     */
+    private void startLearning() {
+        final String textBefore = netText.getText();				// text to which result is added
+        final LinearLayerNetwork learnNet = net;					// network and data being learnt
+        final DataSet learnData = trainData;
+        final ArrayList<Double> newSSEs = new ArrayList<Double>();	// SSEs learnt but not yet shown
+        final SSELog plotSSEs = learnData.getSSELog().copyOf(0);	// SSEs shown so far
+        final int epochs = numEpochs;
+        final double lRate = learnRate, mom = momentum;
+        learnPaused = false;
+        learnStopped = false;
+
+        final Task<String> learnTask = new Task<String>() {
+            private long lastShown = 0;								// time progress last shown
+            @Override
+            protected String call() {
+                learnNet.setEpochListener(new LinearLayerNetwork.EpochListener() {
+                    @Override
+                    public boolean epochLearnt(final int epoch) {
+                        synchronized (newSSEs) {
+                            newSSEs.add(learnData.lastSSE(0));		// note SSE of this epoch
+                        }
+                        long now = System.currentTimeMillis();
+                        if (now - lastShown >= 100) {				// if time, show progress
+                            lastShown = now;
+                            Platform.runLater(new Runnable() {
+                                public void run() {
+                                    showProgress(textBefore, newSSEs, plotSSEs, epoch);
+                                }
+                            });
+                        }
+                        while (learnPaused && !learnStopped) {		// wait while paused
+                            try {
+                                Thread.sleep(50);
+                            } catch (InterruptedException e) {
+                                learnStopped = true;
+                            }
+                        }
+                        return !learnStopped;						// carry on unless stopped
+                    }
+                });
+                try {
+                    return learnNet.doLearn(epochs, lRate, mom);	// learn
+                } finally {
+                    learnNet.setEpochListener(null);
+                }
+            }
+        };
+        learnTask.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {			// when done, on GUI thread
+                showProgress(textBefore, newSSEs, plotSSEs, learnData.sizeSSELog());
+                netText.setText(textBefore + "\n" + learnTask.getValue());	// display result
+                setLearning(false);
+            }
+        });
+        learnTask.setOnFailed(new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {
+                setLearning(false);
+                showMessage("Error", "Learning failed : " + learnTask.getException());
+            }
+        });
+        clearGraph();
+        setLearning(true);
+        Thread learnThread = new Thread(learnTask, "Learning");
+        learnThread.setDaemon(true);						// so does not stop program exiting
+        learnThread.start();
+    }
+
     /**
      * set up the menu of commands for the GUI
      * @return the menu bar
      */
     MenuBar setMenu() {
-        MenuBar menuBar = new MenuBar();					// create main menu
+        menuBar = new MenuBar();							// create main menu
         menuBar.setStyle("-fx-font-size: 14");				// font size to be used
 
         Menu mFile = new Menu("File");						// add File main menu
@@ -394,7 +516,15 @@ public class NeuralNet extends Application {
                 numEpochs = getValue ("Number of Epochs to learn", numEpochs);
             }
         });
-        mParas.getItems().addAll(mLRate, mMomentum, mHidden, mEpoch, mSeed);
+        CheckMenuItem mShuffle = new CheckMenuItem("Shuffle Items");	// add shuffle sub menu item
+        mShuffle.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                shuffle = mShuffle.isSelected();
+                netInitialise();										// restart with or without shuffling
+            }
+        });
+        mParas.getItems().addAll(mLRate, mMomentum, mHidden, mEpoch, mSeed, mShuffle);
 
 
         Menu mHelp = new Menu("Help");									// create Help menu
@@ -445,8 +575,22 @@ public class NeuralNet extends Application {
         btnLearn.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
-                String s = net.doLearn (numEpochs, learnRate, momentum);	// learn
-                netText.setText(netText.getText()+"\n"+s);				// display result
+                startLearning();										// learn in background
+            }
+        });
+        btnPause = new Button("Pause");									// button to pause learning
+        btnPause.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                learnPaused = !learnPaused;								// pause or resume
+                btnPause.setText(learnPaused ? "Resume" : "Pause");
+            }
+        });
+        btnStop = new Button("Stop");									// button to stop learning
+        btnStop.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                learnStopped = true;									// learning stops after epoch
             }
         });
         Button btnWeights = new Button("Weights");
@@ -517,11 +661,13 @@ public class NeuralNet extends Application {
                 else showMessage("Information", "No Graphs there to be copied");
             }
         });
-        HBox hbox = new HBox(new Label ("Operate: "), btnInitialise, btnPresent, btnLearn, btnWeights,
-                new Label ("  Other:"), btnClear, btnClip, btnPlot, btnSSEPlot, btnGraphClip);
+        buttonBox = new HBox(new Label ("Operate: "), btnInitialise, btnPresent, btnLearn, btnPause, btnStop,
+                btnWeights, new Label ("  Other:"), btnClear, btnClip, btnPlot, btnSSEPlot, btnGraphClip);
         // add buttons and text to hbox
-        hbox.setStyle("-fx-font-size: 14");			// set style for hbox
-        return hbox;								// return box with buttons
+        buttonBox.setStyle("-fx-font-size: 14");	// set style for hbox
+        btnPause.setDisable(true);					// pause and stop only used when learning
+        btnStop.setDisable(true);
+        return buttonBox;							// return box with buttons
     }
 
     @Override
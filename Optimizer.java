@@ -0,0 +1,237 @@
+import java.nio.DoubleBuffer;
+
+/**
+ * @author shsmchlr
+ * Way of changing the weights of a network at the end of each batch, from the gradients summed
+ * over the batch (each the sum of input * delta, so weights move along, not against, them)
+ * Works on the flat arrays of weights, changes in weights and gradients of the network, changing
+ * those from .. to-1, so a chain of layers is changed in one call.
+ * Any state other than the last change in each weight is held by the optimizer in its own arrays,
+ * so an optimizer is used by only one network; that state can be saved and restored, by NetCheckpoint,
+ * so learning carries on exactly as it would have.
+ * Implementations are momentum (as originally used), Nesterov momentum, RMSProp and Adam
+ */
+public abstract class Optimizer {
+
+    /**
+     * change the weights from .. to-1, and clear the gradients ready for the next batch
+     * @param weights		array of weights
+     * @param changes		array of the last change in each weight, updated here
+     * @param gradients		array of gradients summed over the batch
+     * @param from			index of first weight
+     * @param to			one after index of last
+     * @param batchCount	how many items were in the batch
+     * @param learnRate		learning rate
+     * @param momentum		momentum
+     */
+    public abstract void changeWeights(double[] weights, double[] changes, double[] gradients, int from, int to,
+                                       int batchCount, double learnRate, double momentum);
+
+    /**
+     * clear any state, eg before learning starts again
+     */
+    public void reset() {
+    }
+
+    /**
+     * return how many values of state, other than the changes in weights, are saved by saveState
+     * @param num	number of weights
+     * @return		number of values
+     */
+    public int stateSize(int num) {
+        return 0;
+    }
+
+    /**
+     * put the state for weights from .. to-1 into db, as stateSize(to-from) values
+     * @param db	buffer
+     * @param from	index of first weight
+     * @param to	one after index of last
+     */
+    public void saveState(DoubleBuffer db, int from, int to) {
+    }
+
+    /**
+     * set the state for weights from .. to-1 from db, as put there by saveState
+     * @param db		buffer
+     * @param from		index of first weight
+     * @param to		one after index of last
+     * @param length	length of the arrays of weights, changes and gradients
+     */
+    public void restoreState(DoubleBuffer db, int from, int to, int length) {
+    }
+
+    /**
+     * put values from .. to-1 of array a into db, or 0s if a not yet made
+     */
+    static void putRange(DoubleBuffer db, double[] a, int from, int to) {
+        if (a != null) db.put(a, from, to - from);
+        else for (int ct=from; ct<to; ct++) db.put(0.0);
+    }
+
+    /**
+     * return a new optimizer of the given name, being momentum, nesterov, rmsprop or adam
+     * @param name
+     * @return	the optimizer
+     */
+    public static Optimizer named(String name) {
+        switch (name.toLowerCase()) {
+            case "momentum" : return new Momentum();
+            case "nesterov" : return new Nesterov();
+            case "rmsprop" : return new RMSProp(0.9, 1e-8);
+            case "adam" : return new Adam(0.9, 0.999, 1e-8);
+            default : throw new IllegalArgumentException("Unknown optimizer " + name);
+        }
+    }
+
+    /**
+     * return array a if it has num elements, else a new one of that size, all 0
+     */
+    static double[] sized(double[] a, int num) {
+        return (a != null && a.length == num) ? a : new double[num];
+    }
+
+    /**
+     * gradient descent with momentum: change = learnRate * gradient + momentum * last change
+     */
+    public static class Momentum extends Optimizer {
+        public void changeWeights(double[] weights, double[] changes, double[] gradients, int from, int to,
+                                  int batchCount, double learnRate, double momentum) {
+            for (int ct=from; ct<to; ct++) {
+                changes[ct] = gradients[ct] / batchCount * learnRate + changes[ct] * momentum;
+                weights[ct] += changes[ct];
+                gradients[ct] = 0.0;
+            }
+        }
+        public String toString() {
+            return "momentum";
+        }
+    }
+
+    /**
+     * Nesterov momentum: the velocity is found as for momentum, but the weight is moved
+     * by the step it would take after that, momentum * velocity + learnRate * gradient
+     */
+    public static class Nesterov extends Optimizer {
+        public void changeWeights(double[] weights, double[] changes, double[] gradients, int from, int to,
+                                  int batchCount, double learnRate, double momentum) {
+            for (int ct=from; ct<to; ct++) {
+                double step = gradients[ct] / batchCount * learnRate;
+                changes[ct] = step + changes[ct] * momentum;				// velocity
+                weights[ct] += step + changes[ct] * momentum;			// look ahead
+                gradients[ct] = 0.0;
+            }
+        }
+        public String toString() {
+            return "nesterov";
+        }
+    }
+
+    /**
+     * RMSProp: each gradient is divided by a running root mean square of that weight's gradients,
+     * so every weight moves at a similar rate; momentum is also applied
+     */
+    public static class RMSProp extends Optimizer {
+        private final double decay, epsilon;
+        private double[] meanSquare;			// running mean of square of each gradient
+
+        /**
+         * @param decay		how much of the mean square is kept each batch, eg 0.9
+         * @param epsilon	added to root mean square so never divide by 0
+         */
+        public RMSProp(double decay, double epsilon) {
+            this.decay = decay;
+            this.epsilon = epsilon;
+        }
+        public void changeWeights(double[] weights, double[] changes, double[] gradients, int from, int to,
+                                  int batchCount, double learnRate, double momentum) {
+            meanSquare = sized(meanSquare, weights.length);
+            for (int ct=from; ct<to; ct++) {
+                double g = gradients[ct] / batchCount;
+                meanSquare[ct] = decay * meanSquare[ct] + (1.0 - decay) * g * g;
+                changes[ct] = learnRate * g / (Math.sqrt(meanSquare[ct]) + epsilon) + changes[ct] * momentum;
+                weights[ct] += changes[ct];
+                gradients[ct] = 0.0;
+            }
+        }
+        public void reset() {
+            meanSquare = null;
+        }
+        public int stateSize(int num) {
+            return num;
+        }
+        public void saveState(DoubleBuffer db, int from, int to) {
+            putRange(db, meanSquare, from, to);
+        }
+        public void restoreState(DoubleBuffer db, int from, int to, int length) {
+            meanSquare = sized(meanSquare, length);
+            db.get(meanSquare, from, to - from);
+        }
+        public String toString() {
+            return "rmsprop";
+        }
+    }
+
+    /**
+     * Adam: uses running means of each gradient and of its square, corrected for their
+     * starting at 0; the momentum argument is not used, as beta1 plays its part
+     */
+    public static class Adam extends Optimizer {
+        private final double beta1, beta2, epsilon;
+        private double[] mean, meanSquare;		// running means of gradient and its square
+        private double beta1Power = 1.0, beta2Power = 1.0;		// beta1^t and beta2^t after t batches
+
+        /**
+         * @param beta1		how much of the mean gradient is kept each batch, eg 0.9
+         * @param beta2		and of the mean square, eg 0.999
+         * @param epsilon	added to root mean square so never divide by 0
+         */
+        public Adam(double beta1, double beta2, double epsilon) {
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            this.epsilon = epsilon;
+        }
+        public void changeWeights(double[] weights, double[] changes, double[] gradients, int from, int to,
+                                  int batchCount, double learnRate, double momentum) {
+            mean = sized(mean, weights.length);
+            meanSquare = sized(meanSquare, weights.length);
+            beta1Power *= beta1;
+            beta2Power *= beta2;
+            double rate = learnRate * Math.sqrt(1.0 - beta2Power) / (1.0 - beta1Power);	// with corrections
+            double eps = epsilon * Math.sqrt(1.0 - beta2Power);
+            for (int ct=from; ct<to; ct++) {
+                double g = gradients[ct] / batchCount;
+                mean[ct] = beta1 * mean[ct] + (1.0 - beta1) * g;
+                meanSquare[ct] = beta2 * meanSquare[ct] + (1.0 - beta2) * g * g;
+                changes[ct] = rate * mean[ct] / (Math.sqrt(meanSquare[ct]) + eps);
+                weights[ct] += changes[ct];
+                gradients[ct] = 0.0;
+            }
+        }
+        public void reset() {
+            mean = null;
+            meanSquare = null;
+            beta1Power = 1.0;
+            beta2Power = 1.0;
+        }
+        public int stateSize(int num) {
+            return 2 + 2 * num;
+        }
+        public void saveState(DoubleBuffer db, int from, int to) {
+            db.put(beta1Power).put(beta2Power);
+            putRange(db, mean, from, to);
+            putRange(db, meanSquare, from, to);
+        }
+        public void restoreState(DoubleBuffer db, int from, int to, int length) {
+            beta1Power = db.get();
+            beta2Power = db.get();
+            mean = sized(mean, length);
+            meanSquare = sized(meanSquare, length);
+            db.get(mean, from, to - from);
+            db.get(meanSquare, from, to - from);
+        }
+        public String toString() {
+            return "adam";
+        }
+    }
+}
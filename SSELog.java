@@ -0,0 +1,222 @@
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * @author shsmchlr
+ * Log of the SSE of each output of a data set, one value per epoch of learning
+ * The values of each output are held in a primitive array which grows by doubling, so adding
+ * an epoch does not create objects, and the minimum, maximum and sum of each output are updated
+ * as each is added, so they need not be found by searching the log.
+ * For plotting, a view with at most a given number of points can be found, each the mean
+ * of a run of epochs, so a long log does not give a list of hundreds of thousands of values
+ */
+public class SSELog {
+    private static final int START_SIZE = 64;	// epochs with space when first added to
+    private double[][] values;				// values[out][epoch] is SSE of output out in that epoch
+    private double[] min, max, sum;			// running minimum, maximum and sum of each output
+    private int size = 0;					// number of epochs logged
+
+    /**
+     * empty the log
+     */
+    public void clear() {
+        size = 0;
+        if (values != null) {
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            Arrays.fill(sum, 0.0);
+        }
+    }
+
+    /**
+     * @return	number of epochs logged
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return	number of outputs logged, 0 if nothing yet added
+     */
+    public int numOutputs() {
+        return (values == null) ? 0 : values.length;
+    }
+
+    /**
+     * add the SSEs of one epoch to the log
+     * @param sse	array with the SSE of each output, the first time setting how many outputs are logged
+     */
+    public void add(double[] sse) {
+        makeSpace(sse.length);
+        for (int ct=0; ct<sse.length; ct++) addValue(ct, sse[ct]);
+        size++;
+    }
+
+    /**
+     * add the SSE of one epoch to a log of one output
+     * @param sse
+     */
+    public void add(double sse) {
+        makeSpace(1);
+        addValue(0, sse);
+        size++;
+    }
+
+    /**
+     * ensure there is space for another epoch of numOuts outputs
+     * if the log is empty, or for a different number of outputs, it is started afresh
+     * @param numOuts
+     */
+    private void makeSpace(int numOuts) {
+        if (values == null || values.length != numOuts) {		// first time, or different outputs
+            values = new double[numOuts][START_SIZE];
+            min = new double[numOuts];
+            max = new double[numOuts];
+            sum = new double[numOuts];
+            clear();
+        }
+        else if (size == values[0].length)						// grow if full
+            for (int ct=0; ct<numOuts; ct++) values[ct] = Arrays.copyOf(values[ct], 2 * size);
+    }
+
+    /**
+     * put v as the SSE of the given output in the next epoch, updating its min, max and sum
+     * @param whichOut
+     * @param v
+     */
+    private void addValue(int whichOut, double v) {
+        values[whichOut][size] = v;
+        if (v < min[whichOut]) min[whichOut] = v;
+        if (v > max[whichOut]) max[whichOut] = v;
+        sum[whichOut] += v;
+    }
+
+    /**
+     * return the SSE of the given output in the given epoch
+     * @param whichOut
+     * @param epoch		epoch, from 0
+     * @return	the SSE
+     */
+    public double get(int whichOut, int epoch) {
+        if (epoch >= size) throw new IndexOutOfBoundsException("Epoch " + epoch + " not in log of " + size);
+        return values[whichOut][epoch];
+    }
+
+    /**
+     * return the latest SSE of the given output
+     * @param whichOut
+     * @return	the SSE
+     */
+    public double last(int whichOut) {
+        return get(whichOut, size - 1);
+    }
+
+    /**
+     * @param whichOut
+     * @return	smallest SSE of the given output in the log
+     */
+    public double min(int whichOut) {
+        return min[whichOut];
+    }
+
+    /**
+     * @param whichOut
+     * @return	largest SSE of the given output in the log
+     */
+    public double max(int whichOut) {
+        return max[whichOut];
+    }
+
+    /**
+     * @param whichOut
+     * @return	mean SSE of the given output in the log
+     */
+    public double mean(int whichOut) {
+        return sum[whichOut] / size;
+    }
+
+    /**
+     * return an arraylist of all the SSEs of the given output
+     * @param whichOut
+     * @return	list
+     */
+    public ArrayList<Double> toList(int whichOut) {
+        ArrayList<Double> ans = new ArrayList<Double>(size);
+        for (int ct=0; ct<size; ct++) ans.add(values[whichOut][ct]);
+        return ans;
+    }
+
+    /**
+     * return an arraylist of at most maxPoints values, for plotting the SSEs of the given output:
+     * if more epochs than that, the epochs are split into maxPoints runs of (near) equal length,
+     * and the mean of each run is given
+     * @param whichOut
+     * @param maxPoints		most values wanted
+     * @return	list
+     */
+    public ArrayList<Double> downsampled(int whichOut, int maxPoints) {
+        if (size <= maxPoints) return toList(whichOut);
+        ArrayList<Double> ans = new ArrayList<Double>(maxPoints);
+        double[] vals = values[whichOut];
+        int from = 0;
+        for (int pt=1; pt<=maxPoints; pt++) {				// for each point
+            int to = (int) ((long) size * pt / maxPoints);	// its run of epochs is from .. to-1
+            double total = 0.0;
+            for (int ct=from; ct<to; ct++) total += vals[ct];
+            ans.add(total / (to - from));
+            from = to;
+        }
+        return ans;
+    }
+
+    /**
+     * put the SSEs of the given output, from the first epoch, into buffer db
+     * @param whichOut
+     * @param db		buffer
+     */
+    public void copyTo(int whichOut, DoubleBuffer db) {
+        db.put(values[whichOut], 0, size);
+    }
+
+    /**
+     * replace the log by numEpochs SSEs of each of numOuts outputs, read from buffer db
+     * one output after another, as put there by copyTo
+     * @param db			buffer
+     * @param numOuts		number of outputs
+     * @param numEpochs		number of epochs
+     */
+    public void readFrom(DoubleBuffer db, int numOuts, int numEpochs) {
+        values = new double[numOuts][Math.max(START_SIZE, numEpochs)];
+        min = new double[numOuts];
+        max = new double[numOuts];
+        sum = new double[numOuts];
+        clear();
+        for (int ct=0; ct<numOuts; ct++) {
+            db.get(values[ct], 0, numEpochs);
+            for (int ep=0; ep<numEpochs; ep++) {
+                double v = values[ct][ep];
+                if (v < min[ct]) min[ct] = v;
+                if (v > max[ct]) max[ct] = v;
+                sum[ct] += v;
+            }
+        }
+        size = numEpochs;
+    }
+
+    /**
+     * return a new log with the SSEs of just the given output
+     * @param whichOut
+     * @return	the log
+     */
+    public SSELog copyOf(int whichOut) {
+        SSELog ans = new SSELog();
+        if (values == null) return ans;
+        ans.values = new double[][] {Arrays.copyOf(values[whichOut], values[whichOut].length)};
+        ans.min = new double[] {min[whichOut]};
+        ans.max = new double[] {max[whichOut]};
+        ans.sum = new double[] {sum[whichOut]};
+        ans.size = size;
+        return ans;
+    }
+}
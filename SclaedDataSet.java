@@ -1,4 +1,10 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 
 /**
@@ -7,8 +13,8 @@ import java.util.ArrayList;
  */
 public class ScaledDataSet extends DataSet {
 
-    DataItem minVals;		// has list of minimum values of each input and output
-    DataItem maxVals;		// and maximum values
+    double[] minIns, minTargets;		// have minimum values of each input and output
+    double[] maxIns, maxTargets;		// and maximum values
 
     /**
      * constructor which is passed the number of inputs and a string with data set
@@ -18,27 +24,69 @@ public class ScaledDataSet extends DataSet {
      * 		string for an item has numbers for inputs then targets separated by space
      */
     public ScaledDataSet(String alldata) {
-        super (alldata);					// puts all data into array list
-        minVals = allItems.get(0);			// copy min values currently as first item in set
-        maxVals = allItems.get(1);			// max values are second
-        allItems.remove(1);					// remove max values from array list
-        allItems.remove(0);					// and min values, so now allItems has actual data
-        numItems -= 2;						// reduce numItems as now two elements fewer
+        super (alldata);					// puts all data into arrays
+        scaleData();
+    }
+
+    /**
+     * constructor of an empty data set, whose values (already scaled) and min and max values
+     * are then set by a loader, eg DataSetFile
+     */
+    protected ScaledDataSet() {
+    }
+
+    /**
+     * constructor which reads the data set from a reader, such as of a file, line by line
+     * @param br	reader from which data read
+     * @throws IOException	if cannot read
+     */
+    protected ScaledDataSet(BufferedReader br) throws IOException {
+        super (br);							// puts all data into arrays
+        scaleData();
+    }
+
+    /**
+     * read the data set from the given file name, in one pass straight into the data arrays
+     * @param name	file name
+     * @return		the data set
+     * @throws UncheckedIOException	if cannot read file
+     */
+    public static ScaledDataSet LoadFile(String name) {
+        try (BufferedReader br = new BufferedReader(new FileReader(name), 1 << 16)) {
+            return new ScaledDataSet(br);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read data set " + name, e);
+        }
+    }
+
+    /**
+     * take min and max values from first two items, remove them, and then scale the remaining items
+     */
+    private void scaleData() {
+        minIns = Arrays.copyOfRange(insData, 0, numIns);				// min values currently first item in set
+        minTargets = Arrays.copyOfRange(targetsData, 0, numOuts);
+        maxIns = Arrays.copyOfRange(insData, numIns, 2*numIns);			// max values are second
+        maxTargets = Arrays.copyOfRange(targetsData, numOuts, 2*numOuts);
+        removeFirstItems(2);				// remove min and max values, so now have actual data
         // now go through the actual items, and normalise data
         // inputs are now in range -1 to +1
         // outputs are in range 0.1 to 0.8 (consistent with sigmoid activation
-        for (int item=0; item<numItems; item++) {
-            allItems.get(item).setInputs(scaleList(allItems.get(item).getInputs(), minVals.getInputs(), maxVals.getInputs(), -1, 1));
-            allItems.get(item).setTargets(scaleList(allItems.get(item).getTargets(), minVals.getTargets(), maxVals.getTargets(), 0.1, 0.9));
-        }
+        scaleArray(insData, minIns, maxIns, -1, 1);
+        scaleArray(targetsData, minTargets, maxTargets, 0.1, 0.9);
     }
 
-    private ArrayList<Double> scaleList(ArrayList<Double> values, ArrayList<Double> minValues,
-                                        ArrayList<Double> maxValues, double toMin, double toMax) {
-        ArrayList<Double> ans = new ArrayList<Double>();
-        for (int ct=0; ct<values.size(); ct++)
-            ans.add(normalise(values.get(ct), minValues.get(ct), maxValues.get(ct), toMin, toMax));
-        return ans;
+    /**
+     * normalise, in place, all values in array, which holds items each with minValues.length values
+     * @param values
+     * @param minValues
+     * @param maxValues
+     * @param toMin
+     * @param toMax
+     */
+    private void scaleArray(double[] values, double[] minValues, double[] maxValues, double toMin, double toMax) {
+        int num = minValues.length;
+        for (int ct=0; ct<values.length; ct++)
+            values[ct] = normalise(values[ct], minValues[ct % num], maxValues[ct % num], toMin, toMax);
     }
     /**
      * normalise value which is between min and max, so in range toMin ,, toMax
@@ -57,11 +105,11 @@ public class ScaledDataSet extends DataSet {
      * @param ct
      * @return array list
      */
-    private ArrayList<Double> deScaleList(ArrayList<Double> values, ArrayList<Double> minValues,
-                                          ArrayList<Double> maxValues, double toMin, double toMax) {
+    private List<Double> deScaleList(List<Double> values, double[] minValues,
+                                     double[] maxValues, double toMin, double toMax) {
         ArrayList<Double> ans = new ArrayList<Double>();
         for (int ct=0; ct<values.size(); ct++)
-            ans.add(denormalise(values.get(ct), minValues.get(ct), maxValues.get(ct), toMin, toMax));
+            ans.add(denormalise(values.get(ct), minValues[ct], maxValues[ct], toMin, toMax));
         return ans;
     }
 
@@ -79,40 +127,102 @@ public class ScaledDataSet extends DataSet {
     }
 
     /**
-     * return array list of inputs so they can be printed (ie denormalised)
+     * normalise raw input values, as the inputs of the set were when it was read, creating no objects
+     * @param raw	array with numInputs raw values
+     * @param ins	array into which normalised values are written
      */
-    protected ArrayList<Double> getPrintIns(int ct) {
-        return deScaleList(getIns(ct), minVals.getInputs(), maxVals.getInputs(), -1, 1);
+    public void normaliseIns(double[] raw, double[] ins) {
+        normaliseIns(raw, 0, ins, 0);
+    }
+
+    /**
+     * normalise raw input values, as above, of an item in an array of many
+     * @param raw			array with raw values
+     * @param rawOffset		index in raw of first input
+     * @param ins			array into which normalised values are written
+     * @param insOffset		index in ins of first
+     */
+    public void normaliseIns(double[] raw, int rawOffset, double[] ins, int insOffset) {
+        for (int ct=0; ct<numIns; ct++)
+            ins[insOffset + ct] = normalise(raw[rawOffset + ct], minIns[ct], maxIns[ct], -1, 1);
+    }
+
+    /**
+     * denormalise outputs of a network into the range of the targets as they were read
+     * @param outs	array with numOutputs outputs
+     * @param raw	array into which denormalised values are written (which may be outs)
+     */
+    public void denormaliseOuts(double[] outs, double[] raw) {
+        denormaliseOuts(outs, 0, raw, 0);
+    }
+
+    /**
+     * denormalise outputs, as above, of an item in an array of many
+     * @param outs			array with outputs
+     * @param outsOffset	index in outs of first output
+     * @param raw			array into which denormalised values are written (which may be outs)
+     * @param rawOffset		index in raw of first
+     */
+    public void denormaliseOuts(double[] outs, int outsOffset, double[] raw, int rawOffset) {
+        for (int ct=0; ct<numOuts; ct++)
+            raw[rawOffset + ct] = denormalise(outs[outsOffset + ct], minTargets[ct], maxTargets[ct], 0.1, 0.9);
+    }
+
+    /**
+     * return list of inputs so they can be printed (ie denormalised)
+     */
+    protected List<Double> getPrintIns(int ct) {
+        return deScaleList(getIns(ct), minIns, maxIns, -1, 1);
         // get inputs then descale to original
     }
 
     /**
      * get the list of targets of ct'th item from set ready for printing (ie denormalised)
      * @param ct
-     * @return array list
+     * @return list
      */
-    protected ArrayList<Double> getPrintTargets(int ct) {
-        return deScaleList(getTargets(ct), minVals.getTargets(), maxVals.getTargets(), 0.1, 0.9);
+    protected List<Double> getPrintTargets(int ct) {
+        return deScaleList(getTargets(ct), minTargets, maxTargets, 0.1, 0.9);
         // get targets and descale
     }
 
     /**
      * get the list of outputs of ct'th item from set ready for printing
      * @param ct
-     * @return array list
+     * @return list
      */
-    public ArrayList<Double> getPrintOuts(int ct) {
-        return deScaleList(getOuts(ct), minVals.getTargets(), maxVals.getTargets(), 0.1, 0.9);
+    public List<Double> getPrintOuts(int ct) {
+        return deScaleList(getOuts(ct), minTargets, maxTargets, 0.1, 0.9);
         // get outputs and descale
     }
 
+    /**
+     * get the ct'th target of the item'th item ready for printing (ie denormalised)
+     * @param item
+     * @param ct
+     * @return target
+     */
+    protected double getPrintTarget(int item, int ct) {
+        return denormalise(getTarget(item, ct), minTargets[ct], maxTargets[ct], 0.1, 0.9);
+    }
+
+    /**
+     * get the ct'th output of the item'th item ready for printing (ie denormalised)
+     * @param item
+     * @param ct
+     * @return output
+     */
+    protected double getPrintOut(int item, int ct) {
+        return denormalise(getOut(item, ct), minTargets[ct], maxTargets[ct], 0.1, 0.9);
+    }
+
     /**
      * @param args
      */
     public static void main(String[] args) {
         // Test data set
 //		ScaledDataSet Test = new ScaledDataSet("2 3 %.0f %.1f %.3f;0 2 0 0 0;5 6 10 10 10;0 6 1 2 3;5 2 4 1 7;3 4 0 10 5");
-        ScaledDataSet Test = new ScaledDataSet(GetFile("unseen.txt"));							// read file into set
+        ScaledDataSet Test = LoadFile("unseen.txt");							// read file into set
         for (int ct=0; ct<Test.numInSet(); ct++) Test.setOutputs(ct, Test.getTargets(ct));	// copy targets to outputs
         System.out.print(Test.toString(true, true));						//print set
 
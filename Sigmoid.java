@@ -0,0 +1,77 @@
+/**
+ * @author shsmchlr
+ * The sigmoid function 1/(1+exp(-x)), found exactly or quickly from a table
+ * The table has the sigmoid of points 1/STEPS_PER_UNIT apart from -RANGE to RANGE, and values in
+ * between are linearly interpolated; outside the range the end values are used.
+ * The error of the fast version is at most MAX_ERROR, which is far less than matters for learning,
+ * and it avoids calling Math.exp, which is the slowest part of finding outputs of sigmoid layers
+ */
+public final class Sigmoid {
+
+    static final double RANGE = 16.0;			// table covers -RANGE .. RANGE
+    static final int STEPS_PER_UNIT = 128;		// number of table points per unit of x
+    static final double MAX_ERROR = 1e-6;		// most the fast sigmoid differs from the exact one
+    private static final int LAST = (int) (2 * RANGE * STEPS_PER_UNIT);	// index of last point
+    private static final double[] TABLE = new double[LAST + 1];
+
+    static {
+        for (int ct=0; ct<=LAST; ct++) TABLE[ct] = exact((double) ct / STEPS_PER_UNIT - RANGE);
+    }
+
+    private Sigmoid() {
+    }
+
+    /**
+     * return the sigmoid of x, using Math.exp
+     * @param x
+     * @return	1/(1+exp(-x))
+     */
+    public static double exact(double x) {
+        return 1.0/(1.0 + Math.exp(-x));
+    }
+
+    /**
+     * return the sigmoid of x, interpolated from the table
+     * @param x
+     * @return	approximately 1/(1+exp(-x))
+     */
+    public static double fast(double x) {
+        double pos = (x + RANGE) * STEPS_PER_UNIT;			// where x is in the table
+        pos = (pos < 0.0) ? 0.0 : (pos > LAST - 1) ? LAST - 1 : pos;	// clamp, so NaN stays NaN
+        int index = (int) pos;
+        double frac = pos - index;
+        return TABLE[index] + frac * (TABLE[index+1] - TABLE[index]);
+    }
+
+    /**
+     * return the sigmoid of x
+     * @param x
+     * @param useFast	if true use the table, else Math.exp
+     * @return	sigmoid of x
+     */
+    public static double of(double x, boolean useFast) {
+        return useFast ? fast(x) : exact(x);
+    }
+
+    /**
+     * replace each of vals from .. to-1 by its sigmoid
+     * @param vals		array of values
+     * @param from		index of first
+     * @param to		one after index of last
+     * @param useFast	if true use the table, else Math.exp
+     */
+    public static void apply(double[] vals, int from, int to, boolean useFast) {
+        if (useFast) for (int ct=from; ct<to; ct++) vals[ct] = fast(vals[ct]);
+        else for (int ct=from; ct<to; ct++) vals[ct] = exact(vals[ct]);
+    }
+
+    /**
+     * check the error of the fast sigmoid over a fine grid, printing the largest
+     * @param args
+     */
+    public static void main(String[] args) {
+        double maxErr = 0.0;
+        for (double x=-20.0; x<=20.0; x+=1e-4) maxErr = Math.max(maxErr, Math.abs(fast(x) - exact(x)));
+        System.out.println("Largest error of fast sigmoid " + maxErr + (maxErr <= MAX_ERROR ? " : OK" : " : too big"));
+    }
+}
@@ -1,9 +1,8 @@
-import java.util.ArrayList;
-
 
 /**
  * @author shsmchlr
  * This is a class for a layer of neurons with sigmoidal activation
+ * whose Activation is the sigmoid, which can be switched to the fast one
  * All such neurons share the same inputs.
  */
 public class SigmoidLayerNetwork extends LinearLayerNetwork {
@@ -16,38 +15,16 @@ public class SigmoidLayerNetwork extends LinearLayerNetwork {
      */
     public SigmoidLayerNetwork(int numIns, int numOuts, DataSet data) {
         super(numIns, numOuts, data);
+        activation = Activation.SIGMOID;			// the activation function is the sigmoid
     }
 
     /**
-     * calcOutputs of neuron
-     * @param nInputs
+     * set whether the sigmoid is found quickly from a table, or exactly using Math.exp
+     * @param on	true to use the table
      */
-    protected void calcOutputs(ArrayList<Double> nInputs) {
-        // write code here
-        int wtIndex = 0;									// used to index weights in order
-        double output;
-        for (int neuronct = 0; neuronct<numNeurons; neuronct++) {
-            output = weights.get(wtIndex++);						// start with bias weight( * 1)
-            for (int inputct=0; inputct<numInputs; inputct++) 		// for remaining weights
-                output += nInputs.get(inputct) * weights.get(wtIndex++);
-            output = 1.0/(1.0 + Math.exp(-output)); //ToDo this line of code was the only one added from Linear Neurons code
-            // add weight*appropriate input and move to next weight
-            outputs.set(neuronct, output);			// set calculated output as the neuron output
-        }
-    }
-    /**
-     * find deltas
-     *	@param errors
-     */
-    protected void findDeltas(ArrayList<Double> errors) {
-        for (int ct=0; ct<deltas.size(); ct++) {
-
-            double error = errors.get(ct);
-            double x = 1/(1 + Math.exp(outputs.get(ct))); // ToDo x is the sigmoid function of the weights, where Math.exp(sum_of_outputs)
-            error = error*x*(1-x); //ToDo this value has been added to create the change in
-            deltas.set(ct, error); //ToDo changed this to change each of the values of the deltas to equal the values of the errors of the same counth value
-        }
-        // write code here
+    public void setFastSigmoid(boolean on) {
+        if (activation == Activation.SIGMOID || activation == Activation.FAST_SIGMOID)
+            setActivation(on ? Activation.FAST_SIGMOID : Activation.SIGMOID);
     }
 
     /**
@@ -1,4 +1,3 @@
-import java.util.ArrayList;
 import java.util.Random;
 
 /**
@@ -13,23 +12,15 @@ public class SigmoidNeuron extends LinearNeuron {
      */
     public SigmoidNeuron(int numIns, DataSet data) {
         super(numIns, data);
+        activation = Activation.SIGMOID;			// the activation function is the sigmoid
     }
 
     /**
-     * calcOutput of neuron
-     * @param nInputs	arraylist with the neuron inputs
+     * set whether the sigmoid is found quickly from a table, or exactly using Math.exp
+     * @param on	true to use the table
      */
-    protected void calcOutput(ArrayList<Double> nInputs) {
-        super.calcOutput(nInputs);					// calc weighted sum of inputs
-        output = 1.0/(1.0 + Math.exp(-output));		// convert to sigmoid(weightedsum)
-    }
-
-    /**
-     * find delta
-     *	@param error	compute the delta from the error passed
-     */
-    protected void findDelta(double error) {
-        delta = error * output * (1.0 - output);
+    public void setFastSigmoid(boolean on) {
+        setActivation(on ? Activation.FAST_SIGMOID : Activation.SIGMOID);
     }
 
     /**